@@ -0,0 +1,173 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channel;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A file channel with blocking read and write methods that are executed by an AsynchronousFileChannel.
+ * The calling virtual thread is parked until the operation is completed, so file I/O doesn't block the carrier thread
+ * and many virtual threads can do random reads of the same file at the same time.
+ *
+ * By default, the operations are executed by a shared pool with a fixed number of threads.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public class AsyncFileChannel implements Channel {
+
+    private final static int DEFAULT_IO_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private final AsynchronousFileChannel fileChannel;
+
+    private AsyncFileChannel(AsynchronousFileChannel fileChannel) {
+        this.fileChannel = fileChannel;
+    }
+
+    /**
+     * Opens a file using the shared pool for the I/O operations.
+     *
+     * @param file the file to open
+     * @param options the options like for FileChannel, READ if no option is given
+     * @return the opened channel
+     * @throws IOException if the file couldn't be opened
+     */
+    public static AsyncFileChannel open(Path file, OpenOption... options) throws IOException {
+        return open(file, DefaultExecutor.INSTANCE, options);
+    }
+
+    /**
+     * Opens a file using the given executor for the I/O operations.
+     *
+     * @param file the file to open
+     * @param executor the executor performing the I/O operations
+     * @param options the options like for FileChannel, READ if no option is given
+     * @return the opened channel
+     * @throws IOException if the file couldn't be opened
+     */
+    public static AsyncFileChannel open(Path file, ExecutorService executor, OpenOption... options) throws IOException {
+        return new AsyncFileChannel(AsynchronousFileChannel.open(file, new HashSet<>(Arrays.asList(options)), executor));
+    }
+
+    /**
+     * Reads bytes from the file at the given position.
+     *
+     * @param dest the buffer to fill
+     * @param position the position in the file
+     * @return the number of bytes read or -1 if the position is after the end of the file
+     * @throws IOException if the read failed
+     */
+    public int read(ByteBuffer dest, long position) throws IOException {
+        return await(fileChannel.read(dest, position));
+    }
+
+    /**
+     * Reads bytes from the file at the given position until the buffer is full or the end of the file is reached.
+     *
+     * @param dest the buffer to fill
+     * @param position the position in the file
+     * @return the number of bytes read or -1 if the position is after the end of the file
+     * @throws IOException if the read failed
+     */
+    public int readFully(ByteBuffer dest, long position) throws IOException {
+        int totalRead = 0;
+        while (dest.hasRemaining()) {
+            int byteRead = read(dest, position + totalRead);
+            if (byteRead < 0) {
+                return totalRead > 0 ? totalRead : -1;
+            }
+            totalRead += byteRead;
+        }
+        return totalRead;
+    }
+
+    /**
+     * Writes all the remaining bytes of the buffer to the file at the given position.
+     *
+     * @param src the bytes to write
+     * @param position the position in the file
+     * @return the number of bytes written
+     * @throws IOException if the write failed
+     */
+    public int write(ByteBuffer src, long position) throws IOException {
+        int totalWritten = 0;
+        while (src.hasRemaining()) {
+            totalWritten += await(fileChannel.write(src, position + totalWritten));
+        }
+        return totalWritten;
+    }
+
+    public long size() throws IOException {
+        return fileChannel.size();
+    }
+
+    public void force(boolean metaData) throws IOException {
+        fileChannel.force(metaData);
+    }
+
+    /**
+     * Parks the current thread until the operation is completed.
+     * If the thread is interrupted, it still waits for the operation to complete as the operation uses the buffer,
+     * and the interrupted status is set again.
+     */
+    private static int await(Future<Integer> operation) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return operation.get();
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof IOException ioException) throw ioException;
+                    throw new IOException(ex.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return fileChannel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        fileChannel.close();
+    }
+
+    // Created when first used
+    private static class DefaultExecutor {
+        private final static ExecutorService INSTANCE = Executors.newFixedThreadPool(DEFAULT_IO_THREADS,
+                Thread.ofPlatform().name("async-file-", 1).daemon(true).factory());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A pool of byte buffers shared by all threads.
+ * Unlike buffers cached in a ThreadLocal, the memory used doesn't grow with the number of virtual threads.
+ *
+ * The buffers are grouped in power of 2 size classes. Each size class is an {@link ObjectPool} keeping a bounded number of free buffers.
+ * Buffers bigger than the maximum size are not pooled.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public class BufferPool {
+
+    private final static int DEFAULT_MIN_SIZE = 4 * 1024;
+    private final static int DEFAULT_MAX_SIZE = 1024 * 1024;
+    private final static int DEFAULT_MAX_BUFFERS_PER_SIZE = 64;
+    private final static BufferPool HEAP_POOL = new BufferPool(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_MAX_BUFFERS_PER_SIZE, false);
+    private final static BufferPool DIRECT_POOL = new BufferPool(DEFAULT_MIN_SIZE, DEFAULT_MAX_SIZE, DEFAULT_MAX_BUFFERS_PER_SIZE, true);
+
+    private final boolean direct;
+    private final int minSize;
+    private final int maxSize;
+    private final ObjectPool<ByteBuffer>[] sizeClasses;
+
+    /**
+     * Creates a buffer pool.
+     *
+     * @param minSize the size of the smallest buffers, rounded up to a power of 2
+     * @param maxSize the size of the biggest pooled buffers, rounded up to a power of 2
+     * @param maxBuffersPerSize the maximum number of free buffers kept per size, rounded up to a power of 2
+     * @param direct true for off-heap direct buffers, false for heap buffers
+     */
+    public BufferPool(int minSize, int maxSize, int maxBuffersPerSize, boolean direct) {
+        if (minSize <= 0 || maxSize < minSize) throw new IllegalArgumentException("Invalid buffer sizes " + minSize + " - " + maxSize);
+        if (maxBuffersPerSize <= 0) throw new IllegalArgumentException("The maximum number of buffers per size should be greater than 0");
+        this.direct = direct;
+        this.minSize = powerOfTwo(minSize);
+        this.maxSize = powerOfTwo(maxSize);
+        int sizeClassCount = Integer.numberOfTrailingZeros(this.maxSize) - Integer.numberOfTrailingZeros(this.minSize) + 1;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        ObjectPool<ByteBuffer>[] pools = new ObjectPool[sizeClassCount];
+        for (int i = 0; i < sizeClassCount; i++) {
+            int size = this.minSize << i;
+            pools[i] = new ObjectPool<>(() -> allocate(size), maxBuffersPerSize, null, ByteBuffer::clear);
+        }
+        sizeClasses = pools;
+    }
+
+    /**
+     * Gets the shared pool of heap buffers.
+     *
+     * @return the shared pool of heap buffers
+     */
+    public static BufferPool heap() {
+        return HEAP_POOL;
+    }
+
+    /**
+     * Gets the shared pool of off-heap direct buffers.
+     *
+     * @return the shared pool of direct buffers
+     */
+    public static BufferPool direct() {
+        return DIRECT_POOL;
+    }
+
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Gets a cleared buffer with at least the requested capacity.
+     * The buffer should be given back with {@link #release(ByteBuffer)} when not used anymore.
+     *
+     * @param minCapacity the minimum capacity of the buffer
+     * @return a buffer from the pool or a new buffer
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        if (minCapacity > maxSize) {
+            return allocate(minCapacity);
+        }
+        return sizeClass(Math.max(minSize, powerOfTwo(minCapacity))).acquire();
+    }
+
+    /**
+     * Gives back a buffer to the pool.
+     * Buffers of other pools are accepted if their type and capacity match a size class of this pool, other buffers are ignored.
+     * The caller should not use the buffer after releasing it and should not release it twice.
+     *
+     * @param buffer the buffer not used anymore by the caller
+     */
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (buffer.isDirect() != direct || buffer.isReadOnly() || capacity < minSize || capacity > maxSize || Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        sizeClass(capacity).release(buffer);
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+    }
+
+    private ObjectPool<ByteBuffer> sizeClass(int size) {
+        return sizeClasses[Integer.numberOfTrailingZeros(size) - Integer.numberOfTrailingZeros(minSize)];
+    }
+
+    private static int powerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+}
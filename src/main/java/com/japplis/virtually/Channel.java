@@ -0,0 +1,249 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A Go like channel to send elements from producer threads to consumer threads.
+ * A channel with a capacity of 0 is a rendezvous channel: the sender waits until the element is received.
+ * Once closed, no element can be sent and the receivers get the remaining elements then <code>null</code>.
+ * {@link #select(Duration, Channel[])} receives from the first of several channels having an element.
+ *
+ * The threads wait with ReentrantLock conditions, so virtual threads are unmounted instead of pinned.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public class Channel<T> implements AutoCloseable {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition received = lock.newCondition();
+    private final ArrayDeque<T> elements;
+    private final int capacity;
+    private final List<Semaphore> selectors = new ArrayList<>();
+    private long sentCount;
+    private long receivedCount;
+    private boolean closed;
+
+    /**
+     * Creates a rendezvous channel.
+     */
+    public Channel() {
+        this(0);
+    }
+
+    /**
+     * Creates a channel.
+     *
+     * @param capacity the maximum number of elements sent but not yet received, 0 for a rendezvous channel
+     */
+    public Channel(int capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("The capacity should be positive");
+        this.capacity = capacity;
+        elements = new ArrayDeque<>(Math.max(capacity, 1));
+    }
+
+    /**
+     * Sends an element, waiting for free space in the channel or, for a rendezvous channel, until the element is received.
+     *
+     * @param element the element to send, not <code>null</code>
+     * @throws InterruptedException if the current thread is interrupted while waiting, the element is then not sent
+     * @throws IllegalStateException if the channel is closed
+     */
+    public void send(T element) throws InterruptedException {
+        Objects.requireNonNull(element, "Sent element cannot be null");
+        lock.lockInterruptibly();
+        try {
+            while (elements.size() >= Math.max(capacity, 1) && !closed) {
+                notFull.await();
+            }
+            if (closed) throw new IllegalStateException("Channel closed");
+            elements.add(element);
+            long sent = ++sentCount;
+            notEmpty.signal();
+            signalSelectors();
+            try {
+                while (capacity == 0 && receivedCount < sent && !closed) {
+                    received.await();
+                }
+            } catch (InterruptedException ex) {
+                if (receivedCount < sent) { // not received, it's the only element of the rendezvous channel
+                    elements.removeLast();
+                    sentCount--;
+                    notFull.signal();
+                }
+                throw ex;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receives an element, waiting until an element is sent or the channel is closed.
+     *
+     * @return the received element or <code>null</code> if the channel is closed and has no more elements
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public T receive() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (elements.isEmpty() && !closed) {
+                notEmpty.await();
+            }
+            return take();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receives an element if one is available without waiting.
+     *
+     * @return the received element or <code>null</code> if no element is available
+     */
+    public T poll() {
+        lock.lock();
+        try {
+            return take();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the channel. The elements already sent can still be received.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+            received.signalAll();
+            signalSelectors();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        lock.lock();
+        try {
+            return closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Receives an element from the first channel having an element or being closed.
+     * When several channels are ready, one is chosen randomly.
+     *
+     * @param <T> the type of the elements
+     * @param timeout the maximum time to wait
+     * @param channels the channels to receive from
+     * @return the index of the channel with the received element, the element is <code>null</code> if the channel is closed
+     * and has no more elements, or <code>null</code> if the timeout elapsed
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    @SafeVarargs
+    public static <T> Selection<T> select(Duration timeout, Channel<? extends T>... channels) throws InterruptedException {
+        if (channels.length == 0) throw new IllegalArgumentException("No channel to select");
+        long deadlineNanos = System.nanoTime() + timeout.toNanos();
+        Semaphore ready = new Semaphore(0);
+        int start = ThreadLocalRandom.current().nextInt(channels.length);
+        try {
+            while (true) {
+                for (int i = 0; i < channels.length; i++) {
+                    int index = (start + i) % channels.length;
+                    Channel<? extends T> channel = channels[index];
+                    channel.lock.lock();
+                    try {
+                        if (!channel.elements.isEmpty() || channel.closed) {
+                            return new Selection<>(index, channel.take());
+                        }
+                        channel.selectors.add(ready); // signaled when an element is sent or the channel is closed
+                    } finally {
+                        channel.lock.unlock();
+                    }
+                }
+                long remainingNanos = deadlineNanos - System.nanoTime();
+                if (remainingNanos <= 0 || !ready.tryAcquire(remainingNanos, TimeUnit.NANOSECONDS)) {
+                    return null;
+                }
+                for (Channel<? extends T> channel : channels) {
+                    channel.unregister(ready);
+                }
+                ready.drainPermits();
+            }
+        } finally {
+            for (Channel<? extends T> channel : channels) {
+                channel.unregister(ready);
+            }
+        }
+    }
+
+    private void unregister(Semaphore selector) {
+        lock.lock();
+        try {
+            selectors.remove(selector);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Should be called with the lock held
+    private T take() {
+        T element = elements.poll();
+        if (element != null) {
+            receivedCount++;
+            notFull.signal();
+            if (capacity == 0) received.signalAll();
+        }
+        return element;
+    }
+
+    // Should be called with the lock held
+    private void signalSelectors() {
+        for (Semaphore selector : selectors) {
+            selector.release();
+        }
+    }
+
+    /**
+     * The result of a select.
+     *
+     * @param index the index of the selected channel
+     * @param element the received element or <code>null</code> if the channel is closed
+     */
+    public record Selection<T>(int index, T element) {
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually;
+
+/**
+ * The kind of work done by the mapper of a conversion.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public enum ConversionMode {
+
+    /**
+     * The mapper mostly computes: the list is split and converted in the work-stealing fork-join common pool.
+     */
+    CPU,
+
+    /**
+     * The mapper mostly blocks on I/O or waits: each element is converted in its own virtual thread.
+     */
+    IO,
+
+    /**
+     * The first elements are converted while measuring the time the mapper blocks,
+     * the other elements are converted using CPU if the mapper blocks less than half of the time, IO otherwise.
+     */
+    AUTO
+}
@@ -0,0 +1,241 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import com.japplis.virtually.scope.CallableFunction;
+import com.japplis.virtually.scope.ScopedContext;
+
+/**
+ * A set of utilities to walk directory trees in parallel in virtual threads.
+ * Useful for network file systems or directories with many files where walking the tree in one thread is slow.
+ *
+ * The results are streamed through a bounded queue, so the tree is not kept in memory
+ * and the walk waits when the stream is not consumed fast enough.
+ * The virtual thread of a directory or file is only started when the maximum concurrency allows it to run.
+ * The returned streams should be closed (for example with try-with-resources) if not fully consumed.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public class Directories {
+
+    private final static int RESULTS_QUEUE_SIZE = 1024;
+
+    // Only static methods
+    private Directories() {
+    }
+
+    /**
+     * Walks the directory tree with one virtual thread per directory and returns the matching regular files.
+     * The order of the files is not defined. Symbolic links are not followed.
+     *
+     * @param root the directory to walk
+     * @param maxConcurrency the maximum number of directories read at the same time, should be greater than 0
+     * @param fileFilter the filter of the files to return
+     * @return the stream of the matching files
+     * @throws UncheckedIOException at the end of the stream if a directory couldn't be read
+     */
+    public static Stream<Path> walk(Path root, int maxConcurrency, Predicate<Path> fileFilter) {
+        return new Walk<Path>(root, maxConcurrency, fileFilter, null).stream();
+    }
+
+    /**
+     * Walks the directory tree and converts the matching regular files with one virtual thread per file.
+     * The order of the results is not defined. The results of the files which conversion failed or returned <code>null</code> are not in the stream.
+     *
+     * @param <R> the result type
+     * @param root the directory to walk
+     * @param maxConcurrency the maximum number of directories read or files converted at the same time, should be greater than 0
+     * @param fileFilter the filter of the files to convert
+     * @param mapper the function to convert the files
+     * @return the stream of the converted files
+     * @throws UncheckedIOException at the end of the stream if a directory couldn't be read
+     */
+    public static <R> Stream<R> convertFiles(Path root, int maxConcurrency, Predicate<Path> fileFilter, CallableFunction<Path, R> mapper) {
+        return new Walk<>(root, maxConcurrency, fileFilter, mapper).stream();
+    }
+
+    private static class Walk<R> implements Iterator<R> {
+
+        private final static Object END = new Object();
+
+        private final BlockingQueue<Object> results = new ArrayBlockingQueue<>(RESULTS_QUEUE_SIZE);
+        private final AtomicInteger pendingTasks = new AtomicInteger();
+        private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("walk-", 1).factory());
+        private final ScopedContext context = ScopedContext.capture();
+        private final Semaphore concurrency;
+        private final Predicate<Path> fileFilter;
+        private final CallableFunction<Path, R> mapper;
+        private volatile IOException walkException;
+        private Object next;
+
+        private Walk(Path root, int maxConcurrency, Predicate<Path> fileFilter, CallableFunction<Path, R> mapper) {
+            if (maxConcurrency <= 0) throw new IllegalArgumentException("The maximum concurrency should be greater than 0");
+            concurrency = new Semaphore(maxConcurrency);
+            this.fileFilter = fileFilter;
+            this.mapper = mapper;
+            concurrency.acquireUninterruptibly(); // always available for the root directory
+            start(() -> walkDirectory(root));
+        }
+
+        private void submit(WalkTask task) throws InterruptedException {
+            concurrency.acquire(); // no new thread while the maximum concurrency is reached
+            start(task);
+        }
+
+        private void start(WalkTask task) {
+            pendingTasks.incrementAndGet();
+            try {
+                executor.execute(context.wrap(() -> runTask(task)));
+            } catch (RejectedExecutionException ex) {
+                concurrency.release();
+                pendingTasks.decrementAndGet(); // Stream closed
+            }
+        }
+
+        private void runTask(WalkTask task) {
+            try {
+                List<WalkTask> nextTasks;
+                try {
+                    nextTasks = task.run();
+                } finally {
+                    concurrency.release();
+                }
+                for (WalkTask nextTask : nextTasks) {
+                    submit(nextTask);
+                }
+            } catch (InterruptedException ex) {
+                // Stream closed
+            } catch (IOException ex) {
+                if (walkException == null) walkException = ex;
+            } finally {
+                if (pendingTasks.decrementAndGet() == 0) {
+                    endResults();
+                }
+            }
+        }
+
+        private void endResults() {
+            try {
+                results.put(END); // waits for the consumer if the queue is full
+            } catch (InterruptedException ex) {
+                // Stream closed
+            }
+        }
+
+        private List<WalkTask> walkDirectory(Path directory) throws IOException, InterruptedException {
+            List<WalkTask> nextTasks = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (Thread.currentThread().isInterrupted()) throw new InterruptedException();
+                    BasicFileAttributes attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    if (attributes.isDirectory()) {
+                        nextTasks.add(() -> walkDirectory(entry));
+                    } else if (attributes.isRegularFile() && fileFilter.test(entry)) {
+                        if (mapper == null) {
+                            results.put(entry);
+                        } else {
+                            nextTasks.add(() -> convertFile(entry));
+                        }
+                    }
+                }
+            } catch (DirectoryIteratorException ex) {
+                throw ex.getCause();
+            }
+            return nextTasks;
+        }
+
+        private List<WalkTask> convertFile(Path file) throws InterruptedException {
+            R result;
+            try {
+                result = mapper.call(file);
+            } catch (InterruptedException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                return List.of(); // Ignore
+            }
+            if (result != null) {
+                results.put(result);
+            }
+            return List.of();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = results.take();
+                } catch (InterruptedException ex) {
+                    close();
+                    Thread.currentThread().interrupt();
+                    next = END;
+                }
+                if (next == END) {
+                    executor.shutdown(); // all tasks are finished
+                }
+            }
+            if (next == END) {
+                if (walkException != null) throw new UncheckedIOException(walkException);
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public R next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            R result = (R) next;
+            next = null;
+            return result;
+        }
+
+        private Stream<R> stream() {
+            Spliterator<R> spliterator = Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL);
+            return StreamSupport.stream(spliterator, false).onClose(this::close);
+        }
+
+        private void close() {
+            executor.shutdownNow();
+            results.clear(); // unblock the tasks waiting to add results
+        }
+    }
+
+    /**
+     * A directory read or a file conversion returning the tasks to start once its permit is released.
+     */
+    @FunctionalInterface
+    private interface WalkTask {
+        List<WalkTask> run() throws IOException, InterruptedException;
+    }
+}
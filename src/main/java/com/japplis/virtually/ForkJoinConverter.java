@@ -0,0 +1,192 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.japplis.virtually.scope.CallableFunction;
+import com.japplis.virtually.scope.Deadline;
+import com.japplis.virtually.scope.ScopedContext;
+
+/**
+ * The conversion of lists for compute intensive mappers in the fork-join common pool.
+ * The list is split in ranges that idle workers can steal instead of starting one thread per element.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+class ForkJoinConverter {
+
+    final static int SAMPLE_SIZE = 4;
+
+    private final static Object FAILED = new Object();
+    private final static double MAX_CPU_BLOCKING_RATIO = 0.5;
+
+    // Only static methods
+    private ForkJoinConverter() {
+    }
+
+    /**
+     * Converts the elements in the fork-join common pool.
+     *
+     * @param failOnException true to throw the first exception, false to skip the elements that failed
+     * @return the converted elements in the same order as the elements
+     * @throws Exception the first exception thrown by the mapper or a TimeoutException if the {@link Deadline} is reached
+     */
+    static <E, R> List<R> convert(List<E> elements, CallableFunction<E, R> mapper, boolean failOnException) throws Exception {
+        Object[] results = new Object[elements.size()];
+        if (results.length == 0) return new ArrayList<>();
+        int chunkSize = Math.max(1, results.length / (ForkJoinPool.getCommonPoolParallelism() * 8));
+        RangeConversion<E, R> conversion = new RangeConversion<>(elements, mapper, results, 0, results.length, chunkSize,
+                ScopedContext.capture(), Deadline.current(), failOnException, new AtomicReference<>());
+        ForkJoinPool.commonPool().invoke(conversion);
+        if (conversion.failure.get() != null) {
+            throw conversion.failure.get();
+        }
+        List<R> convertedElements = new ArrayList<>(results.length);
+        for (Object result : results) {
+            if (result != FAILED) {
+                @SuppressWarnings("unchecked") // results only contain FAILED or the values returned by the mapper
+                R convertedElement = (R) result;
+                convertedElements.add(convertedElement);
+            }
+        }
+        return convertedElements;
+    }
+
+    /**
+     * Converts the first elements in the fork-join common pool while measuring the CPU time and the elapsed time.
+     *
+     * @param failOnException true to throw the first exception, false to skip the elements that failed
+     * @return the converted sample elements and the mode to use for the other elements
+     * @throws Exception the first exception thrown by the mapper
+     */
+    static <E, R> Sample<R> sample(List<E> elements, CallableFunction<E, R> mapper, boolean failOnException) throws Exception {
+        ScopedContext context = ScopedContext.capture();
+        List<Callable<Measure<R>>> sampleTasks = new ArrayList<>();
+        for (E elem : elements) {
+            sampleTasks.add(context.wrap(() -> measure(elem, mapper)));
+        }
+        List<R> results = new ArrayList<>();
+        long cpuNanos = 0;
+        long elapsedNanos = 0;
+        for (Future<Measure<R>> sampleTask : ForkJoinPool.commonPool().invokeAll(sampleTasks)) {
+            try {
+                Measure<R> measure = sampleTask.get();
+                results.add(measure.result());
+                cpuNanos += measure.cpuNanos();
+                elapsedNanos += measure.elapsedNanos();
+            } catch (ExecutionException ex) {
+                if (failOnException) {
+                    throw ex.getCause() instanceof Exception cause ? cause : ex;
+                }
+            }
+        }
+        boolean cpuBound = cpuNanos >= 0 && elapsedNanos > 0 && 1 - (double) cpuNanos / elapsedNanos < MAX_CPU_BLOCKING_RATIO;
+        return new Sample<>(results, cpuBound ? ConversionMode.CPU : ConversionMode.IO);
+    }
+
+    private static <E, R> Measure<R> measure(E elem, CallableFunction<E, R> mapper) throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        boolean cpuTimeSupported = threadBean.isCurrentThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled();
+        long startCpu = cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() : 0;
+        long start = System.nanoTime();
+        R result = mapper.call(elem);
+        long elapsedNanos = System.nanoTime() - start;
+        long cpuNanos = cpuTimeSupported ? threadBean.getCurrentThreadCpuTime() - startCpu : -1;
+        return new Measure<>(result, cpuNanos, elapsedNanos);
+    }
+
+    record Sample<R>(List<R> results, ConversionMode mode) {
+    }
+
+    private record Measure<R>(R result, long cpuNanos, long elapsedNanos) {
+    }
+
+    @SuppressWarnings("serial") // only run in the fork-join pool, never serialized
+    private static class RangeConversion<E, R> extends RecursiveAction {
+
+        private final List<E> elements;
+        private final CallableFunction<E, R> mapper;
+        private final Object[] results;
+        private final int from;
+        private final int to;
+        private final int chunkSize;
+        private final ScopedContext context;
+        private final Deadline deadline;
+        private final boolean failOnException;
+        private final AtomicReference<Exception> failure;
+
+        private RangeConversion(List<E> elements, CallableFunction<E, R> mapper, Object[] results, int from, int to, int chunkSize,
+                ScopedContext context, Deadline deadline, boolean failOnException, AtomicReference<Exception> failure) {
+            this.elements = elements;
+            this.mapper = mapper;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+            this.chunkSize = chunkSize;
+            this.context = context;
+            this.deadline = deadline;
+            this.failOnException = failOnException;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunkSize) {
+                context.wrap(this::convertRange).run();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeConversion<>(elements, mapper, results, from, middle, chunkSize, context, deadline, failOnException, failure),
+                    new RangeConversion<>(elements, mapper, results, middle, to, chunkSize, context, deadline, failOnException, failure));
+        }
+
+        private void convertRange() {
+            for (int i = from; i < to; i++) {
+                if (failure.get() != null) return;
+                if (deadline != null && deadline.isExpired()) {
+                    if (failOnException) {
+                        failure.compareAndSet(null, new TimeoutException("Deadline reached"));
+                        return;
+                    }
+                    results[i] = FAILED;
+                    continue;
+                }
+                try {
+                    results[i] = mapper.call(elements.get(i));
+                } catch (Exception ex) {
+                    if (failOnException) {
+                        failure.compareAndSet(null, ex);
+                        return;
+                    }
+                    results[i] = FAILED;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.japplis.virtually.scope.ScopedContext;
+
+/**
+ * An executor running the tasks of the same key one after the other in the submission order,
+ * while the tasks of different keys run concurrently in virtual threads.
+ * This replaces the locks used only to serialize the updates of an entity, like <code>SyncUtils.runSynchronized(productId, ...)</code>,
+ * without blocking the thread submitting the task.
+ *
+ * Each key with tasks to run has a mailbox with one virtual thread running its tasks.
+ * The mailbox and its thread are removed once there are no more tasks for the key.
+ * The tasks of a mailbox are counted with compare-and-set, so submitting a task for a key never blocks: the map is only locked
+ * to add the mailbox of a key, a mailbox with no tasks is marked as removed before being removed from the map.
+ * The scoped values registered in {@link ScopedContext} are bound in the tasks.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public class KeyedExecutor<K> {
+
+    private final static int REMOVED = -1;
+
+    private final ConcurrentHashMap<K, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ThreadFactory threadFactory;
+
+    public KeyedExecutor() {
+        this("keyed-");
+    }
+
+    public KeyedExecutor(String threadNamePrefix) {
+        threadFactory = Thread.ofVirtual().name(threadNamePrefix, 0).factory();
+    }
+
+    /**
+     * Submits a task to run after the tasks already submitted for the same key.
+     *
+     * @param <V> the type returned by the task
+     * @param key the key of the entity the task is about
+     * @param task the task to run
+     * @return the future result of the task
+     */
+    public <V> CompletableFuture<V> submit(K key, Callable<V> task) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        Callable<V> contextTask = ScopedContext.capture().wrap(task);
+        enqueue(key, () -> {
+            if (result.isDone()) return; // cancelled
+            try {
+                result.complete(contextTask.call());
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
+    public CompletableFuture<Void> execute(K key, Runnable task) {
+        return submit(key, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Gets the number of keys having tasks running or waiting to run.
+     *
+     * @return the number of mailboxes
+     */
+    public int getActiveKeyCount() {
+        return mailboxes.size();
+    }
+
+    private void enqueue(K key, Runnable task) {
+        while (true) {
+            Mailbox mailbox = mailboxes.get(key);
+            if (mailbox == null) {
+                mailbox = mailboxes.computeIfAbsent(key, k -> new Mailbox());
+            }
+            int count = mailbox.taskCount.get();
+            if (count < 0) {
+                mailboxes.remove(key, mailbox); // removed by its thread, retry with a new mailbox
+            } else if (mailbox.taskCount.compareAndSet(count, count + 1)) {
+                mailbox.tasks.add(task);
+                if (count == 0) { // new mailbox
+                    Mailbox newMailbox = mailbox;
+                    threadFactory.newThread(() -> runTasks(key, newMailbox)).start();
+                }
+                return;
+            }
+        }
+    }
+
+    private void runTasks(K key, Mailbox mailbox) {
+        while (true) {
+            Runnable task = mailbox.tasks.poll();
+            if (task == null) {
+                Thread.yield(); // counted but not yet added by its submitter
+                continue;
+            }
+            task.run();
+            if (mailbox.taskCount.compareAndSet(1, REMOVED)) {
+                mailboxes.remove(key, mailbox);
+                return;
+            }
+            mailbox.taskCount.decrementAndGet(); // more tasks to run, the count stays greater than 0
+        }
+    }
+
+    // The tasks of a key not yet finished, only run by the thread of the mailbox
+    private static class Mailbox {
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger taskCount = new AtomicInteger();
+    }
+}
@@ -19,12 +19,21 @@ package com.japplis.virtually;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 import com.japplis.virtually.scope.CallableFunction;
+import com.japplis.virtually.scope.Deadline;
+import com.japplis.virtually.scope.ScopedContext;
+import com.japplis.virtually.scope.ToDoubleCallable;
+import com.japplis.virtually.scope.ToIntCallable;
+import com.japplis.virtually.scope.ToLongCallable;
 
 /**
  * A set of utilities to convert lists in parallel in virtual threads.
+ * The scoped values registered in {@link ScopedContext} are bound in the virtual threads executing the mapper.
+ * Within a {@link Deadline}, no new conversion is started and the conversions not finished are cancelled when the deadline is reached.
+ * Compute intensive mappers can be converted in the fork-join common pool with {@link ConversionMode#CPU}.
  *
  * @author Anthony Goubard - Japplis
  */
@@ -46,17 +55,22 @@ public class ListConverter {
      * @return the converted elements according to the mapper, or an empty list if the scope is interrupted.
      */
     public static <E, R> List<R> convertList(List<E> elements, Function<E, R> mapper) {
+        ScopedContext context = ScopedContext.capture();
+        Deadline deadline = Deadline.current();
         try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
             List<Future<R>> futures = new  ArrayList<>();
             for (E elem : elements) {
-                Future<R> task = executor.submit(() -> mapper.apply(elem));
+                if (deadline != null && deadline.isExpired()) break;
+                Future<R> task = executor.submit(context.wrap(() -> mapper.apply(elem)));
                 futures.add(task);
             }
             List<R> results = new ArrayList<>();
             for (Future<R> task : futures) {
                 try {
-                    R result = task.get();
+                    R result = Deadline.await(task);
                     results.add(result);
+                } catch (TimeoutException ex) {
+                    task.cancel(true);
                 } catch (Exception ex) {
                     // Ignore
                 }
@@ -65,6 +79,37 @@ public class ListConverter {
         }
     }
 
+    /**
+     * Converts a list to another list using the virtual threads or the fork-join common pool depending on the mode.
+     * The result list can be smaller as only the convertions that didn't throw an exception will be in the result;
+     *
+     * @param <E> the elements type
+     * @param <R> the result type
+     * @param elements the list of elements to convert
+     * @param mapper the function to convert elements
+     * @param mode CPU for compute intensive mappers, IO for blocking mappers or AUTO to decide after the first conversions
+     * @return the converted elements according to the mapper, or an empty list if interrupted.
+     */
+    public static <E, R> List<R> convertList(List<E> elements, Function<E, R> mapper, ConversionMode mode) {
+        CallableFunction<E, R> callableMapper = mapper::apply;
+        try {
+            return switch (mode) {
+                case CPU -> ForkJoinConverter.convert(elements, callableMapper, false);
+                case IO -> convertList(elements, mapper);
+                case AUTO -> {
+                    int sampleSize = Math.min(ForkJoinConverter.SAMPLE_SIZE, elements.size());
+                    ForkJoinConverter.Sample<R> sample = ForkJoinConverter.sample(elements.subList(0, sampleSize), callableMapper, false);
+                    List<R> results = new ArrayList<>(sample.results());
+                    results.addAll(convertList(elements.subList(sampleSize, elements.size()), mapper, sample.mode()));
+                    yield results;
+                }
+            };
+        } catch (Exception ex) {
+            // Interrupted, the mapper exceptions are ignored
+            return new ArrayList<>();
+        }
+    }
+
     /**
      * Converts all the elements in the list or throw an Exception if a convertion failed.
      *
@@ -73,20 +118,29 @@ public class ListConverter {
      * @param elements the list of elements to convert
      * @param mapper the function to convert elements
      * @return the converted elements according to the mapper
-     * @throws Exception if a mapping failed or it was interrupted or cancelled
+     * @throws Exception if a mapping failed or it was interrupted or cancelled or the {@link Deadline} was reached
      */
     public static <E, R> List<R> convertAll(List<E> elements, CallableFunction<E, R> mapper) throws Exception {
+        ScopedContext context = ScopedContext.capture();
+        Deadline deadline = Deadline.current();
         try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
             List<Future<R>> futures = new  ArrayList<>();
             for (E elem : elements) {
-                Future<R> task = executor.submit(() -> mapper.call(elem));
+                if (deadline != null && deadline.isExpired()) {
+                    executor.shutdownNow();
+                    throw new TimeoutException("Deadline reached");
+                }
+                Future<R> task = executor.submit(context.wrap(() -> mapper.call(elem)));
                 futures.add(task);
             }
             List<R> results = new ArrayList<>();
             for (Future<R> task : futures) {
                 try {
-                    R result = task.get();
+                    R result = Deadline.await(task);
                     results.add(result);
+                } catch (TimeoutException ex) {
+                    executor.shutdownNow();
+                    throw ex;
                 } catch (Exception ex) {
                     if (ex.getCause() instanceof Exception cause && cause != null) {
                         throw cause;
@@ -98,6 +152,60 @@ public class ListConverter {
         }
     }
 
+    /**
+     * Converts all the elements in the list using the virtual threads or the fork-join common pool depending on the mode.
+     *
+     * @param <E> the elements type
+     * @param <R> the result type
+     * @param elements the list of elements to convert
+     * @param mapper the function to convert elements
+     * @param mode CPU for compute intensive mappers, IO for blocking mappers or AUTO to decide after the first conversions
+     * @return the converted elements according to the mapper
+     * @throws Exception if a mapping failed or it was interrupted or cancelled or the {@link Deadline} was reached
+     */
+    public static <E, R> List<R> convertAll(List<E> elements, CallableFunction<E, R> mapper, ConversionMode mode) throws Exception {
+        return switch (mode) {
+            case CPU -> ForkJoinConverter.convert(elements, mapper, true);
+            case IO -> convertAll(elements, mapper);
+            case AUTO -> {
+                int sampleSize = Math.min(ForkJoinConverter.SAMPLE_SIZE, elements.size());
+                ForkJoinConverter.Sample<R> sample = ForkJoinConverter.sample(elements.subList(0, sampleSize), mapper, true);
+                List<R> results = new ArrayList<>(sample.results());
+                results.addAll(convertAll(elements.subList(sampleSize, elements.size()), mapper, sample.mode()));
+                yield results;
+            }
+        };
+    }
+
+    /**
+     * Converts all the elements in the list in two stages: a blocking stage in a virtual thread per element
+     * followed by a compute intensive stage in the fork-join common pool.
+     * This way the compute stages are limited to the number of processors and don't delay the blocking stages.
+     *
+     * @param <E> the elements type
+     * @param <M> the type returned by the blocking stage
+     * @param <R> the result type
+     * @param elements the list of elements to convert
+     * @param blockingMapper the function doing I/O or waiting
+     * @param computeMapper the compute intensive function converting the result of the blocking function
+     * @return the converted elements according to the mappers
+     * @throws Exception if a mapping failed or it was interrupted or cancelled or the {@link Deadline} was reached
+     */
+    public static <E, M, R> List<R> convertAll(List<E> elements, CallableFunction<E, M> blockingMapper, CallableFunction<M, R> computeMapper) throws Exception {
+        return convertAll(elements, elem -> {
+            M blockingResult = blockingMapper.call(elem);
+            Future<R> computeTask = ForkJoinPool.commonPool().submit(ScopedContext.capture().wrap(() -> computeMapper.call(blockingResult)));
+            try {
+                return Deadline.await(computeTask);
+            } catch (ExecutionException ex) {
+                throw ex.getCause() instanceof Exception cause ? cause : ex;
+            } catch (TimeoutException ex) {
+                computeTask.cancel(true);
+                throw ex;
+            }
+        });
+    }
+
     /**
      * Converts a list to a map where the key is the element and value the mapped function for the element using the mapper using virtual thread to execute the mapper.
      * The mapper needs to a function that performs I/O or waits to make sense of using virtual thread.
@@ -110,18 +218,23 @@ public class ListConverter {
      * @return the elements with converted elements according to the mapper, or an empty map if the scope is interrupted.
      */
     public static <E, R> Map<E, R> convertToMap(List<E> elements, Function<E, R> mapper) {
+        ScopedContext context = ScopedContext.capture();
+        Deadline deadline = Deadline.current();
         try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
             Map<E, Future<R>> futures = new LinkedHashMap<>();
             for (E elem : elements) {
-                Future<R> task = executor.submit(() -> mapper.apply(elem));
+                if (deadline != null && deadline.isExpired()) break;
+                Future<R> task = executor.submit(context.wrap(() -> mapper.apply(elem)));
                 futures.put(elem, task);
             }
             Map<E, R> results = new LinkedHashMap<>();
             for (var elemToTask : futures.entrySet()) {
                 try {
                     E elem = elemToTask.getKey();
-                    R result = elemToTask.getValue().get();
+                    R result = Deadline.await(elemToTask.getValue());
                     results.put(elem, result);
+                } catch (TimeoutException ex) {
+                    elemToTask.getValue().cancel(true);
                 } catch (Exception ex) {
                     // Ignore
                 }
@@ -143,18 +256,27 @@ public class ListConverter {
      * @throws Exception if it failed
      */
     public static <E, R> Map<E, R> convertAllToMap(List<E> elements, CallableFunction<E, R> mapper) throws Exception {
+        ScopedContext context = ScopedContext.capture();
+        Deadline deadline = Deadline.current();
         try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
             Map<E, Future<R>> futures = new LinkedHashMap<>();
             for (E elem : elements) {
-                Future<R> task = executor.submit(() -> mapper.call(elem));
+                if (deadline != null && deadline.isExpired()) {
+                    executor.shutdownNow();
+                    throw new TimeoutException("Deadline reached");
+                }
+                Future<R> task = executor.submit(context.wrap(() -> mapper.call(elem)));
                 futures.put(elem, task);
             }
             Map<E, R> results = new LinkedHashMap<>();
             for (var elemToTask : futures.entrySet()) {
                 try {
                     E elem = elemToTask.getKey();
-                    R result = elemToTask.getValue().get();
+                    R result = Deadline.await(elemToTask.getValue());
                     results.put(elem, result);
+                } catch (TimeoutException ex) {
+                    executor.shutdownNow();
+                    throw ex;
                 } catch (Exception ex) {
                     if (ex.getCause() instanceof Exception cause && cause != null) {
                         throw cause;
@@ -165,4 +287,77 @@ public class ListConverter {
             return results;
         }
     }
+
+    /**
+     * Converts all the elements in the list to doubles using one virtual thread per element.
+     * The results are written directly in the array, without boxing.
+     *
+     * @param <E> the elements type
+     * @param elements the list of elements to convert
+     * @param mapper the function to convert elements
+     * @return the converted elements according to the mapper, in the same order as the elements
+     * @throws Exception if a mapping failed or it was interrupted or the {@link Deadline} was reached
+     */
+    public static <E> double[] convertToDoubles(List<E> elements, ToDoubleCallable<E> mapper) throws Exception {
+        double[] results = new double[elements.size()];
+        convertIndexes(elements.size(), index -> results[index] = mapper.call(elements.get(index)));
+        return results;
+    }
+
+    public static <E> long[] convertToLongs(List<E> elements, ToLongCallable<E> mapper) throws Exception {
+        long[] results = new long[elements.size()];
+        convertIndexes(elements.size(), index -> results[index] = mapper.call(elements.get(index)));
+        return results;
+    }
+
+    public static <E> int[] convertToInts(List<E> elements, ToIntCallable<E> mapper) throws Exception {
+        int[] results = new int[elements.size()];
+        convertIndexes(elements.size(), index -> results[index] = mapper.call(elements.get(index)));
+        return results;
+    }
+
+    // Converts each index in a virtual thread, stops at the first failure
+    private static void convertIndexes(int size, IndexConversion conversion) throws Exception {
+        ScopedContext context = ScopedContext.capture();
+        Deadline deadline = Deadline.current();
+        CountDownLatch remainingConversions = new CountDownLatch(size);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < size; i++) {
+                if (deadline != null && deadline.isExpired()) {
+                    executor.shutdownNow();
+                    throw new TimeoutException("Deadline reached");
+                }
+                int index = i;
+                try {
+                    executor.execute(context.wrap(() -> {
+                        try {
+                            conversion.convert(index);
+                        } catch (Exception ex) {
+                            if (failure.compareAndSet(null, ex)) executor.shutdownNow();
+                        } finally {
+                            remainingConversions.countDown();
+                        }
+                    }));
+                } catch (RejectedExecutionException ex) {
+                    break; // shut down after a failure
+                }
+            }
+            if (failure.get() == null) {
+                if (deadline == null) {
+                    remainingConversions.await();
+                } else if (!remainingConversions.await(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS)) {
+                    executor.shutdownNow();
+                    throw new TimeoutException("Deadline reached");
+                }
+            }
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+        }
+    }
+
+    private interface IndexConversion {
+        void convert(int index) throws Exception;
+    }
 }
@@ -0,0 +1,130 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.japplis.virtually.scope.CallableFunction;
+import com.japplis.virtually.scope.ScopedContext;
+
+/**
+ * A set of utilities to process large files in parallel in virtual threads using memory mapped chunks.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public class MappedFiles {
+
+    private final static int SCAN_BUFFER_SIZE = 8192;
+
+    // Only static methods
+    private MappedFiles() {
+    }
+
+    /**
+     * Converts the lines of a file in chunks of about <code>chunkSize</code> bytes.
+     *
+     * @param <R> the result type
+     * @param file the file to process
+     * @param chunkSize the approximate size of the chunks, a chunk always ends after a new line or at the end of the file
+     * @param mapper the function to convert a chunk of lines
+     * @return the converted chunks in the order of the file
+     * @throws Exception if the file couldn't be read or a mapping failed
+     * @see #convertChunks(Path, int, byte, CallableFunction)
+     */
+    public static <R> List<R> convertLineChunks(Path file, int chunkSize, CallableFunction<ByteBuffer, R> mapper) throws Exception {
+        return convertChunks(file, chunkSize, (byte) '\n', mapper);
+    }
+
+    /**
+     * Converts a file in chunks using one virtual thread per chunk.
+     * Each chunk is a read only memory mapped buffer of about <code>chunkSize</code> bytes that ends after the delimiter,
+     * so records are never split between 2 chunks.
+     * The file is not copied into the heap, the operating system loads the pages of the file when accessed.
+     *
+     * @param <R> the result type
+     * @param file the file to process
+     * @param chunkSize the approximate size of the chunks, should be greater than 0
+     * @param delimiter the byte ending a record
+     * @param mapper the function to convert a chunk of records
+     * @return the converted chunks in the order of the file
+     * @throws Exception if the file couldn't be read or a mapping failed
+     */
+    public static <R> List<R> convertChunks(Path file, int chunkSize, byte delimiter, CallableFunction<ByteBuffer, R> mapper) throws Exception {
+        if (chunkSize <= 0) throw new IllegalArgumentException("The chunk size should be greater than 0");
+        ScopedContext context = ScopedContext.capture();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            long fileSize = channel.size();
+            List<Future<R>> futures = new ArrayList<>();
+            long chunkStart = 0;
+            while (chunkStart < fileSize) {
+                long chunkEnd = Math.min(chunkStart + chunkSize, fileSize);
+                if (chunkEnd < fileSize) {
+                    chunkEnd = indexAfterDelimiter(channel, chunkEnd - 1, delimiter, fileSize);
+                }
+                long position = chunkStart;
+                long size = chunkEnd - chunkStart;
+                Future<R> task = executor.submit(context.wrap(() -> mapper.call(channel.map(FileChannel.MapMode.READ_ONLY, position, size))));
+                futures.add(task);
+                chunkStart = chunkEnd;
+            }
+            List<R> results = new ArrayList<>(futures.size());
+            for (Future<R> task : futures) {
+                try {
+                    results.add(task.get());
+                } catch (Exception ex) {
+                    if (ex.getCause() instanceof Exception cause && cause != null) {
+                        throw cause;
+                    }
+                    throw ex;
+                }
+            }
+            return results;
+        }
+    }
+
+    private static long indexAfterDelimiter(FileChannel channel, long position, byte delimiter, long fileSize) throws IOException {
+        BufferPool scanBuffers = BufferPool.heap();
+        ByteBuffer scanBuffer = scanBuffers.acquire(SCAN_BUFFER_SIZE);
+        try {
+            while (position < fileSize) {
+                scanBuffer.clear();
+                int byteRead = channel.read(scanBuffer, position);
+                if (byteRead <= 0) break;
+                for (int i = 0; i < byteRead; i++) {
+                    if (scanBuffer.get(i) == delimiter) {
+                        return position + i + 1;
+                    }
+                }
+                position += byteRead;
+            }
+            return fileSize;
+        } finally {
+            scanBuffers.release(scanBuffer);
+        }
+    }
+}
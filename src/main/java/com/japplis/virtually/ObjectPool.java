@@ -0,0 +1,167 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import com.japplis.virtually.scope.CallableFunction;
+
+/**
+ * A pool of objects that are expensive to create and not thread-safe, like MessageDigest, DateFormat or Deflater.
+ * Unlike objects cached in a ThreadLocal, the objects are reused by all the short-lived virtual threads.
+ *
+ * The free objects are kept in a bounded number of slots taken and returned with compare-and-set,
+ * starting at a slot depending on the thread id so that threads mostly use different slots.
+ * No lock is used, so borrowing and returning objects never blocks or pins the thread.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public class ObjectPool<T> {
+
+    private final Supplier<T> factory;
+    private final Predicate<T> validator;
+    private final Consumer<T> reset;
+    private final AtomicReferenceArray<T> freeObjects;
+    private final AtomicInteger freeCount = new AtomicInteger();
+    private final LongAdder createdCount = new LongAdder();
+    private final int mask;
+
+    public ObjectPool(Supplier<T> factory, int maxSize) {
+        this(factory, maxSize, null, null);
+    }
+
+    /**
+     * Creates a pool of objects.
+     *
+     * @param factory the creator of new objects when no free object is available
+     * @param maxSize the maximum number of free objects kept, rounded up to a power of 2
+     * @param validator the check that an object can still be used or <code>null</code> if objects are always valid
+     * @param reset the reset of an object given back to the pool or <code>null</code> if nothing needs to be reset
+     */
+    public ObjectPool(Supplier<T> factory, int maxSize, Predicate<T> validator, Consumer<T> reset) {
+        if (maxSize <= 0) throw new IllegalArgumentException("The maximum size should be greater than 0");
+        this.factory = factory;
+        this.validator = validator;
+        this.reset = reset;
+        int size = maxSize == 1 ? 1 : Integer.highestOneBit(maxSize - 1) << 1;
+        freeObjects = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Gets a free object from the pool or a new object.
+     * The object should be given back with {@link #release(Object)} when not used anymore.
+     *
+     * @return an object only used by the caller until released
+     */
+    public T acquire() {
+        T object = poll();
+        while (object != null && validator != null && !validator.test(object)) {
+            object = poll();
+        }
+        if (object == null) {
+            object = factory.get();
+            createdCount.increment();
+        }
+        return object;
+    }
+
+    /**
+     * Gives back an object to the pool.
+     * The object is dropped if not valid or if the pool is full.
+     * Releasing the same object twice is a caller error: the object could then be lent to two callers.
+     *
+     * @param object the object not used anymore by the caller
+     */
+    public void release(T object) {
+        if (object == null || freeCount.get() > mask) return;
+        if (reset != null) reset.accept(object);
+        if (validator != null && !validator.test(object)) return;
+        int start = startSlot();
+        for (int i = 0; i <= mask; i++) {
+            int slot = (start + i) & mask;
+            if (freeObjects.get(slot) == null && freeObjects.compareAndSet(slot, null, object)) {
+                freeCount.incrementAndGet();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs the function with an object of the pool.
+     *
+     * @param <R> the type returned by the function
+     * @param function the function using the object
+     * @return the result of the function
+     */
+    public <R> R use(Function<T, R> function) {
+        T object = acquire();
+        try {
+            return function.apply(object);
+        } finally {
+            release(object);
+        }
+    }
+
+    public <R> R call(CallableFunction<T, R> function) throws Exception {
+        T object = acquire();
+        try {
+            return function.call(object);
+        } finally {
+            release(object);
+        }
+    }
+
+    /**
+     * Gets the number of objects created by this pool.
+     *
+     * @return the number of objects created
+     */
+    public long getCreatedCount() {
+        return createdCount.sum();
+    }
+
+    public int getFreeCount() {
+        return freeCount.get();
+    }
+
+    private T poll() {
+        if (freeCount.get() <= 0) return null;
+        int start = startSlot();
+        for (int i = 0; i <= mask; i++) {
+            int slot = (start + i) & mask;
+            T object = freeObjects.get(slot);
+            if (object != null && freeObjects.compareAndSet(slot, object, null)) {
+                freeCount.decrementAndGet();
+                return object;
+            }
+        }
+        return null;
+    }
+
+    private static int startSlot() {
+        long threadId = Thread.currentThread().threadId();
+        return (int) (threadId ^ (threadId >>> 32)) * 0x9E3779B9; // spread consecutive thread ids
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A ReadableByteChannel that reads the input stream ahead in a virtual thread.
+ * While the caller is processing the bytes read, the next bytes are already read from the input stream.
+ *
+ * The memory used is bounded to <code>depth</code> buffers of <code>bufferSize</code> bytes.
+ * Closing the channel also closes the input stream as it's read by another thread.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public class ReadAheadByteChannel implements ReadableByteChannel {
+
+    private final static int DEFAULT_DEPTH = 4;
+    private final static int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private final static Chunk END_OF_STREAM = new Chunk(null, -1, null);
+
+    private volatile boolean isOpen = true;
+    private final InputStream inputStream;
+    private final ReentrantLock channelLock = new ReentrantLock();
+    private final BlockingQueue<byte[]> freeBuffers;
+    private final BlockingQueue<Chunk> filledChunks;
+    private final int depth;
+    private final int bufferSize;
+    private final Thread readAheadThread;
+    private Chunk currentChunk;
+    private int chunkPosition;
+
+    public ReadAheadByteChannel(InputStream inputStream) {
+        this(inputStream, DEFAULT_DEPTH, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a channel reading ahead the input stream.
+     *
+     * @param inputStream the input stream to read
+     * @param depth the maximum number of buffers read ahead, should be greater than 0
+     * @param bufferSize the size of each buffer, should be greater than 0
+     */
+    public ReadAheadByteChannel(InputStream inputStream, int depth, int bufferSize) {
+        if (depth <= 0) throw new IllegalArgumentException("The depth should be greater than 0");
+        if (bufferSize <= 0) throw new IllegalArgumentException("The buffer size should be greater than 0");
+        this.inputStream = inputStream;
+        this.depth = depth;
+        this.bufferSize = bufferSize;
+        freeBuffers = new ArrayBlockingQueue<>(depth);
+        filledChunks = new ArrayBlockingQueue<>(depth + 1); // + 1 for the end of stream or error
+        readAheadThread = Thread.ofVirtual().name("read-ahead").start(this::readAhead);
+    }
+
+    private void readAhead() {
+        int allocatedBuffers = 0;
+        try {
+            while (isOpen) {
+                byte[] buffer = freeBuffers.poll();
+                if (buffer == null && allocatedBuffers < depth) {
+                    buffer = new byte[bufferSize];
+                    allocatedBuffers++;
+                } else if (buffer == null) {
+                    buffer = freeBuffers.take();
+                }
+                int length = inputStream.read(buffer, 0, bufferSize);
+                if (length < 0) {
+                    filledChunks.put(END_OF_STREAM);
+                    return;
+                }
+                while (length < bufferSize && inputStream.available() > 0) {
+                    int byteRead = inputStream.read(buffer, length, bufferSize - length);
+                    if (byteRead <= 0) break;
+                    length += byteRead;
+                }
+                filledChunks.put(new Chunk(buffer, length, null));
+            }
+        } catch (InterruptedException ex) {
+            // Closed
+        } catch (IOException | RuntimeException ex) {
+            if (isOpen) {
+                filledChunks.offer(new Chunk(null, -1, ex));
+            }
+        }
+    }
+
+    /**
+     * Copies the bytes already read ahead, blocking only if no bytes have been read ahead yet.
+     *
+     * @param dest the buffer to fill
+     * @return the number of bytes read or -1 if the end of the stream is reached
+     * @throws IOException if reading the input stream failed
+     */
+    @Override
+    public int read(ByteBuffer dest) throws IOException {
+        if (dest.isReadOnly()) {
+            throw new IllegalArgumentException("The byte buffer should not be read only");
+        }
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+        try {
+            channelLock.lockInterruptibly();
+        } catch (InterruptedException ex) {
+            close();
+            throw new ClosedByInterruptException();
+        }
+        try {
+            int totalRead = 0;
+            while (dest.hasRemaining()) {
+                if (currentChunk == null) {
+                    currentChunk = totalRead == 0 ? filledChunks.take() : filledChunks.poll();
+                    if (currentChunk == null) break;
+                    chunkPosition = 0;
+                }
+                if (!isOpen()) {
+                    throw new AsynchronousCloseException();
+                }
+                if (currentChunk.error() != null) {
+                    if (totalRead > 0) break;
+                    throw new IOException(currentChunk.error());
+                }
+                if (currentChunk == END_OF_STREAM) {
+                    return totalRead > 0 ? totalRead : -1;
+                }
+                int length = Math.min(dest.remaining(), currentChunk.length() - chunkPosition);
+                dest.put(currentChunk.data(), chunkPosition, length);
+                chunkPosition += length;
+                totalRead += length;
+                if (chunkPosition == currentChunk.length()) {
+                    freeBuffers.offer(currentChunk.data());
+                    currentChunk = null;
+                }
+            }
+            return totalRead;
+        } catch (InterruptedException ex) {
+            close();
+            throw new ClosedByInterruptException();
+        } finally {
+            channelLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!isOpen) return;
+        isOpen = false;
+        readAheadThread.interrupt();
+        filledChunks.offer(END_OF_STREAM); // wakes up a blocked reader
+        inputStream.close();
+    }
+
+    private record Chunk(byte[] data, int length, Exception error) {
+    }
+}
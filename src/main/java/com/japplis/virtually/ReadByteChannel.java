@@ -30,7 +30,10 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class ReadByteChannel implements ReadableByteChannel {
 
-    private boolean isOpen = true;
+    private final static int TRANSFER_BUFFER_SIZE = 8192;
+
+    private final static BufferPool TRANSFER_BUFFERS = BufferPool.heap();
+    private volatile boolean isOpen = true;
     private final InputStream inputStream;
     private final ReentrantLock channelLock = new ReentrantLock();
 
@@ -38,6 +41,14 @@ public class ReadByteChannel implements ReadableByteChannel {
         this.inputStream = inputStream;
     }
 
+    /**
+     * Reads the bytes available from the input stream, blocking only until at least one byte is read.
+     * Heap buffers are filled directly, other buffers are filled through a transfer buffer from the shared heap {@link BufferPool}.
+     *
+     * @param dest the buffer to fill
+     * @return the number of bytes read or -1 if the end of the stream is reached
+     * @throws IOException if the input stream failed
+     */
     @Override
     public int read(ByteBuffer dest) throws IOException {
         if (dest.isReadOnly()) {
@@ -52,26 +63,35 @@ public class ReadByteChannel implements ReadableByteChannel {
             close();
             throw new ClosedByInterruptException();
         }
-        int byteRead = 0;
-        int totalRead = 0;
         try {
-            while (byteRead >= 0) {
-                if (!isOpen()) {
-                    throw new AsynchronousCloseException();
-                }
-                int destBufferSize = dest.remaining();
-                if (destBufferSize <= 0) break;
-                byte[] readBuffer = new byte[destBufferSize];
-                byteRead = inputStream.read(readBuffer);
+            if (!isOpen()) {
+                throw new AsynchronousCloseException();
+            }
+            int destBufferSize = dest.remaining();
+            if (destBufferSize <= 0) return 0;
+            int byteRead;
+            if (dest.hasArray()) {
+                byteRead = inputStream.read(dest.array(), dest.arrayOffset() + dest.position(), destBufferSize);
                 if (byteRead > 0) {
-                    totalRead += byteRead;
-                    dest.put(readBuffer, 0, byteRead);
+                    dest.position(dest.position() + byteRead);
+                }
+            } else {
+                ByteBuffer transferBuffer = TRANSFER_BUFFERS.acquire(TRANSFER_BUFFER_SIZE);
+                try {
+                    byte[] transferBytes = transferBuffer.array();
+                    int transferOffset = transferBuffer.arrayOffset();
+                    byteRead = inputStream.read(transferBytes, transferOffset, Math.min(destBufferSize, TRANSFER_BUFFER_SIZE));
+                    if (byteRead > 0) {
+                        dest.put(transferBytes, transferOffset, byteRead);
+                    }
+                } finally {
+                    TRANSFER_BUFFERS.release(transferBuffer);
                 }
             }
+            return byteRead;
         } finally {
             channelLock.unlock();
         }
-        return totalRead;
     }
 
     @Override
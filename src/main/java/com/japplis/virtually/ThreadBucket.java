@@ -18,32 +18,112 @@
 package com.japplis.virtually;
 
 import java.time.Duration;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.japplis.virtually.scope.ScopedContext;
 
 /**
  * A group of related virtual threads.
+ * Threads can be started from any thread and are removed from the bucket when they terminate,
+ * so a bucket can be used during the whole life of an application.
+ *
+ * A bucket is also an ExecutorService executing each task in a new virtual thread of the bucket.
+ * The scoped values registered in {@link ScopedContext} are bound in the started threads.
  *
  * @author Anthony Goubard - Japplis
  */
-public class ThreadBucket {
+public class ThreadBucket extends AbstractExecutorService {
 
-    private List<Thread> threads = new ArrayList<>();
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private final LongAdder startedCount = new LongAdder();
+    private final LongAdder finishedCount = new LongAdder();
     private final Thread.Builder.OfVirtual threadFactory;
+    private final ReentrantLock terminationLock = new ReentrantLock();
+    private final Condition threadTerminated = terminationLock.newCondition();
+    private final AtomicInteger terminationWaiters = new AtomicInteger();
+    private volatile boolean shutdown;
 
     public ThreadBucket(String name) {
         threadFactory = Thread.ofVirtual().name(name, 1);
     }
 
     public Thread startVitualThread(Runnable run) {
-        Thread thread = threadFactory.start(run);
-        threads.add(thread);
+        if (shutdown) throw new RejectedExecutionException("The thread bucket is shut down");
+        Runnable task = ScopedContext.capture().wrap(run);
+        Thread thread = threadFactory.unstarted(() -> {
+            try {
+                task.run();
+            } finally {
+                terminated(Thread.currentThread());
+            }
+        });
+        threads.add(thread); // added before start so it's removed after being added
+        if (shutdown) { // shut down meanwhile, the bucket may already be seen as terminated
+            threads.remove(thread);
+            signalTerminationWaiters();
+            throw new RejectedExecutionException("The thread bucket is shut down");
+        }
+        startedCount.increment();
+        thread.start();
         return thread;
     }
 
+    private void terminated(Thread thread) {
+        threads.remove(thread);
+        finishedCount.increment();
+        signalTerminationWaiters();
+    }
+
+    private void signalTerminationWaiters() {
+        if (terminationWaiters.get() > 0) {
+            terminationLock.lock();
+            try {
+                threadTerminated.signalAll();
+            } finally {
+                terminationLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        startVitualThread(command);
+    }
+
+    /**
+     * Gets the threads of this bucket that are still running.
+     *
+     * @return a copy of the running threads
+     */
     public List<Thread> getThreads() {
-        return threads;
+        return new ArrayList<>(threads);
+    }
+
+    /**
+     * Gets the number of threads of this bucket that are still running.
+     *
+     * @return the number of running threads
+     */
+    public int getLiveCount() {
+        return threads.size();
+    }
+
+    public long getStartedCount() {
+        return startedCount.sum();
+    }
+
+    public long getFinishedCount() {
+        return finishedCount.sum();
     }
 
     public void interrupt() {
@@ -55,29 +135,109 @@ public class ThreadBucket {
     }
 
     public void waitForAll() {
-        Threads.waitForAll(threads);
+        Threads.waitForAll(getThreads());
     }
 
+    /**
+     * Waits for the running threads until the maximum wait time is reached.
+     * The threads still running after the maximum wait time are interrupted.
+     * If the current thread is interrupted, it stops waiting.
+     *
+     * @param maxWait the maximum time to wait for all the threads
+     * @return the threads that finished
+     */
     public List<Thread> waitFor(Duration maxWait) {
         List<Thread> finishedThreads = new ArrayList<>();
-        long startWaitMillis = System.currentTimeMillis();
-        long maxWaitMillis = maxWait.get(ChronoUnit.NANOS) / 1000;
-        for (Thread thread : threads) {
-            long runningTime = System.currentTimeMillis() - startWaitMillis;
-            long remainingTime = runningTime - maxWaitMillis;
-            if (remainingTime > 0) {
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        for (Thread thread : getThreads()) {
+            long remainingNanos = deadline - System.nanoTime();
+            boolean finished = !thread.isAlive();
+            if (!finished && remainingNanos > 0) {
                 try {
-                    thread.join(remainingTime);
-                    finishedThreads.add(thread);
+                    finished = thread.join(Duration.ofNanos(remainingNanos));
                 } catch (InterruptedException ex) {
-                    // Ignore
+                    Thread.currentThread().interrupt();
+                    deadline = System.nanoTime(); // stop waiting
                 }
-            } else if (thread.isAlive()) {
-                thread.interrupt();
-            } else {
+            }
+            if (finished) {
                 finishedThreads.add(thread);
+            } else {
+                thread.interrupt();
             }
         }
         return finishedThreads;
     }
+
+    /**
+     * Waits until one of the running threads finishes.
+     *
+     * @param maxWait the maximum time to wait
+     * @return the finished thread or <code>null</code> if no thread was running or no thread finished in time
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public Thread waitForAny(Duration maxWait) throws InterruptedException {
+        List<Thread> runningThreads = getThreads();
+        if (runningThreads.isEmpty()) return null;
+        long remainingNanos = maxWait.toNanos();
+        terminationWaiters.incrementAndGet();
+        terminationLock.lock();
+        try {
+            while (true) {
+                for (Thread thread : runningThreads) {
+                    if (!threads.contains(thread)) return thread;
+                }
+                if (remainingNanos <= 0) return null;
+                remainingNanos = threadTerminated.awaitNanos(remainingNanos);
+            }
+        } finally {
+            terminationLock.unlock();
+            terminationWaiters.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        signalTerminationWaiters();
+    }
+
+    /**
+     * Shuts down this bucket and interrupts the running threads.
+     *
+     * @return an empty list as tasks are never queued
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        interrupt();
+        return new ArrayList<>();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && threads.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+        terminationWaiters.incrementAndGet();
+        terminationLock.lock();
+        try {
+            while (!isTerminated()) {
+                if (remainingNanos <= 0) return false;
+                remainingNanos = threadTerminated.awaitNanos(remainingNanos);
+            }
+            return true;
+        } finally {
+            terminationLock.unlock();
+            terminationWaiters.decrementAndGet();
+        }
+    }
 }
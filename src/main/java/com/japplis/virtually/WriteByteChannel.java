@@ -0,0 +1,220 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A GatheringByteChannel that isn't 'synchronized' when writing to the output stream but that uses a ReentrantLock to be virtual thread friendly.
+ * Small writes are buffered and written to the output stream when the buffer is full, when flushed
+ * or, if a maximum delay is given, when the oldest buffered byte waited longer than this delay.
+ * Large heap buffers are written directly to the output stream without copy.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public class WriteByteChannel implements GatheringByteChannel, Flushable {
+
+    private final static int DEFAULT_BUFFER_SIZE = 8192;
+
+    private volatile boolean isOpen = true;
+    private final OutputStream outputStream;
+    private final ReentrantLock channelLock = new ReentrantLock();
+    private final byte[] buffer;
+    private int bufferCount;
+    private long firstBufferedNanos;
+    private final long maxDelayNanos;
+    private Thread flushThread; // started on the first buffered write, guarded by channelLock
+    private IOException flushException;
+
+    public WriteByteChannel(OutputStream outputStream) {
+        this(outputStream, DEFAULT_BUFFER_SIZE, null);
+    }
+
+    /**
+     * Creates a channel buffering the writes to the output stream.
+     *
+     * @param outputStream the output stream to write to
+     * @param bufferSize the size of the buffer, should be greater than 0
+     * @param maxDelay the maximum time the bytes can stay in the buffer or <code>null</code> to only write when the buffer is full or flushed
+     */
+    public WriteByteChannel(OutputStream outputStream, int bufferSize, Duration maxDelay) {
+        if (bufferSize <= 0) throw new IllegalArgumentException("The buffer size should be greater than 0");
+        this.outputStream = Objects.requireNonNull(outputStream);
+        buffer = new byte[bufferSize];
+        maxDelayNanos = maxDelay != null ? maxDelay.toNanos() : -1;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        lock();
+        try {
+            return writeBuffer(src);
+        } finally {
+            channelLock.unlock();
+        }
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        Objects.checkFromIndexSize(offset, length, srcs.length);
+        lock();
+        try {
+            long totalWritten = 0;
+            for (int i = offset; i < offset + length; i++) {
+                totalWritten += writeBuffer(srcs[i]);
+            }
+            return totalWritten;
+        } finally {
+            channelLock.unlock();
+        }
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    private void lock() throws IOException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+        try {
+            channelLock.lockInterruptibly();
+        } catch (InterruptedException ex) {
+            close();
+            throw new ClosedByInterruptException();
+        }
+        if (!isOpen()) {
+            channelLock.unlock();
+            throw new AsynchronousCloseException();
+        }
+        if (flushException != null) {
+            IOException exception = flushException;
+            flushException = null;
+            channelLock.unlock();
+            throw exception;
+        }
+    }
+
+    private int writeBuffer(ByteBuffer src) throws IOException {
+        int length = src.remaining();
+        if (length >= buffer.length && src.hasArray()) {
+            writeBufferedBytes();
+            outputStream.write(src.array(), src.arrayOffset() + src.position(), length);
+            src.position(src.limit());
+            return length;
+        }
+        while (src.hasRemaining()) {
+            if (bufferCount == 0) {
+                firstBufferedNanos = System.nanoTime();
+                if (maxDelayNanos >= 0 && flushThread == null) {
+                    flushThread = Thread.ofVirtual().name("write-flush").start(this::flushPeriodically);
+                }
+            }
+            int copyLength = Math.min(src.remaining(), buffer.length - bufferCount);
+            src.get(buffer, bufferCount, copyLength);
+            bufferCount += copyLength;
+            if (bufferCount == buffer.length) {
+                writeBufferedBytes();
+            }
+        }
+        return length;
+    }
+
+    private void writeBufferedBytes() throws IOException {
+        if (bufferCount > 0) {
+            int count = bufferCount;
+            bufferCount = 0;
+            outputStream.write(buffer, 0, count);
+        }
+    }
+
+    private void flushPeriodically() {
+        long maxDelayMillis = Math.max(1, maxDelayNanos / 1_000_000);
+        while (isOpen()) {
+            try {
+                Thread.sleep(maxDelayMillis);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            channelLock.lock();
+            try {
+                if (isOpen() && bufferCount > 0 && System.nanoTime() - firstBufferedNanos >= maxDelayNanos) {
+                    writeBufferedBytes();
+                    outputStream.flush();
+                }
+            } catch (IOException ex) {
+                flushException = ex;
+            } finally {
+                channelLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the output stream and flushes the output stream.
+     *
+     * @throws IOException if writing to the output stream failed
+     */
+    @Override
+    public void flush() throws IOException {
+        lock();
+        try {
+            writeBufferedBytes();
+            outputStream.flush();
+        } finally {
+            channelLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return isOpen;
+    }
+
+    /**
+     * Writes the buffered bytes and closes the output stream.
+     *
+     * @throws IOException if writing to or closing the output stream failed
+     */
+    @Override
+    public void close() throws IOException {
+        channelLock.lock();
+        try {
+            if (!isOpen) return;
+            isOpen = false;
+            if (flushThread != null) {
+                flushThread.interrupt();
+            }
+            try {
+                writeBufferedBytes();
+            } finally {
+                outputStream.close();
+            }
+        } finally {
+            channelLock.unlock();
+        }
+    }
+}
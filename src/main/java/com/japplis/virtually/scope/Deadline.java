@@ -0,0 +1,114 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually.scope;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A request level deadline carried implicitly with a ScopedValue.
+ * EnhancedTaskScope, ListTaskScope and ListConverter called within the deadline stop forking new tasks
+ * and stop waiting for the results once the deadline is reached, also when they are nested.
+ *
+ * Example: <code>Deadline.within(Duration.ofSeconds(2)).call(() -> ListConverter.convertAll(products, priceService::retreivePrice));</code>
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public final class Deadline {
+
+    private final static ScopedValue<Deadline> CURRENT = ScopedContext.newCarriedValue();
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Gets the carrier to run code with a deadline in the given time.
+     * If a deadline is already set and is earlier, the current deadline is kept.
+     *
+     * @param timeout the maximum time for the code to run
+     * @return the carrier to run or call the code with the deadline
+     */
+    public static ScopedValue.Carrier within(Duration timeout) {
+        long deadlineNanos = System.nanoTime() + timeout.toNanos();
+        Deadline current = current();
+        if (current != null && current.deadlineNanos - deadlineNanos < 0) {
+            deadlineNanos = current.deadlineNanos;
+        }
+        return ScopedValue.where(CURRENT, new Deadline(deadlineNanos));
+    }
+
+    /**
+     * Gets the carrier to run code with a deadline at the given time.
+     *
+     * @param deadline the time at which the code should stop
+     * @return the carrier to run or call the code with the deadline
+     */
+    public static ScopedValue.Carrier at(Instant deadline) {
+        return within(Duration.between(Instant.now(), deadline));
+    }
+
+    /**
+     * Gets the deadline of the current thread.
+     *
+     * @return the deadline or <code>null</code> if the current code has no deadline
+     */
+    public static Deadline current() {
+        return CURRENT.isBound() ? CURRENT.get() : null;
+    }
+
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(remainingNanos());
+    }
+
+    public boolean isExpired() {
+        return remainingNanos() <= 0;
+    }
+
+    public Instant toInstant() {
+        return Instant.now().plusNanos(remainingNanos());
+    }
+
+    /**
+     * Waits for the result of the future, until the current deadline if any.
+     *
+     * @param <V> the type of the result
+     * @param future the future to get the result from
+     * @return the result of the future
+     * @throws InterruptedException if the current thread was interrupted
+     * @throws ExecutionException if the task failed
+     * @throws TimeoutException if the deadline is reached before the result is available
+     */
+    public static <V> V await(Future<V> future) throws InterruptedException, ExecutionException, TimeoutException {
+        Deadline deadline = current();
+        if (deadline == null) {
+            return future.get();
+        }
+        return future.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+    }
+}
@@ -24,6 +24,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A StructuredTaskScope with extra methods.
+ * Within a {@link Deadline}, the scope is shut down when the deadline is reached: new forks are not executed
+ * and join() returns at the deadline.
  *
  * @author Anthony Goubard - Japplis
  */
@@ -46,6 +48,11 @@ public class EnhancedTaskScope<T> extends StructuredTaskScope<T> {
         return maxConsecutiveFails;
     }
 
+    /**
+     * Sets the number of consecutive failed tasks allowed before the scope is shut down, default is -1.
+     *
+     * @param maxConsecutiveFails the maximum of consecutive fails or a negative value to keep the scope running when tasks fail
+     */
     public void setMaxConsecutiveFails(int maxConsecutiveFails) {
         this.maxConsecutiveFails = maxConsecutiveFails;
     }
@@ -81,12 +88,21 @@ public class EnhancedTaskScope<T> extends StructuredTaskScope<T> {
 
     @Override
     public <U extends T> StructuredTaskScope.Subtask<U> fork(Callable<? extends U> task) {
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.isExpired()) {
+            shutdown();
+        }
         if (maxConcurrency != null) {
             boolean acquired = false;
             while (!acquired && !isShutdown()) {
                 try {
-                    maxConcurrency.acquire();
-                    acquired = true;
+                    if (deadline == null) {
+                        maxConcurrency.acquire();
+                        acquired = true;
+                    } else {
+                        acquired = maxConcurrency.tryAcquire(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+                        if (!acquired) shutdown();
+                    }
                 } catch (InterruptedException ex) {
                 }
             }
@@ -94,6 +110,27 @@ public class EnhancedTaskScope<T> extends StructuredTaskScope<T> {
         return super.fork(task);
     }
 
+    /**
+     * Waits for all the tasks to complete or, within a {@link Deadline}, until the deadline is reached.
+     * If the deadline is reached, the scope is shut down.
+     *
+     * @return this scope
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    @Override
+    public StructuredTaskScope<T> join() throws InterruptedException {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return super.join();
+        }
+        try {
+            return super.joinUntil(deadline.toInstant());
+        } catch (TimeoutException ex) {
+            shutdown();
+            return super.join();
+        }
+    }
+
     /**
      * Submit a task that should fail the scope if the task fails
      *
@@ -112,7 +149,7 @@ public class EnhancedTaskScope<T> extends StructuredTaskScope<T> {
         if (maxConcurrency != null) maxConcurrency.release();
         super.handleComplete(subtask);
         if (subtask.state() == Subtask.State.FAILED &&
-                (consecutiveFails.incrementAndGet() > maxConsecutiveFails || criticalTasks.contains(subtask))) {
+                ((maxConsecutiveFails >= 0 && consecutiveFails.incrementAndGet() > maxConsecutiveFails) || criticalTasks.contains(subtask))) {
             failedException = subtask.exception();
             shutdown();
         }
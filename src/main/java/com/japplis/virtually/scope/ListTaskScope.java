@@ -18,17 +18,39 @@
 package com.japplis.virtually.scope;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ThreadFactory;
 
 /**
  * A StructuredTaskScope specialized for lists mapping.
  *
+ * The results and states are stored by position in arrays of fixed size chunks, so each converted element
+ * only costs a slot in the arrays once its task is done. Converting an element equal to an element still being converted
+ * doesn't fork a new task: the result of the first conversion is used for both positions.
+ * The elements converted with convertToDouble, convertToLong or convertToInt store their result in primitive arrays without boxing.
+ *
  * @author Anthony Goubard - Japplis
  */
 public class ListTaskScope<E, R> extends EnhancedTaskScope<R> {
 
-    private final Map<E, Subtask<? extends R>> elemToSubtask = new LinkedHashMap<>();
+    private final static int CHUNK_SHIFT = 10;
+    private final static int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private final static int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private final static byte UNAVAILABLE = 0;
+    private final static byte SUCCESS = 1;
+    private final static byte FAILED = 2;
+    private final static byte DUPLICATE = 3;
+    private final static byte DOUBLE_SUCCESS = 4;
+    private final static byte LONG_SUCCESS = 5;
+
     private final CallableFunction<E, R> mapper;
+    private final List<E> elements = new ArrayList<>();
+    private final Map<E, InFlight> inFlight = new ConcurrentHashMap<>();
+    private Object[][] resultChunks = new Object[16][];
+    private byte[][] stateChunks = new byte[16][];
+    private long[][] primitiveChunks = new long[16][]; // allocated for the chunks with primitive conversions
+    private R defaultValue;
 
     public ListTaskScope(CallableFunction<E, R> mapper) {
         this.mapper = mapper;
@@ -39,6 +61,19 @@ public class ListTaskScope<E, R> extends EnhancedTaskScope<R> {
         this.mapper = mapper;
     }
 
+    public R getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * Sets the result used for the elements which conversion failed, default is <code>null</code> to skip these elements.
+     *
+     * @param defaultValue the result for the failed conversions
+     */
+    public void setDefaultValue(R defaultValue) {
+        this.defaultValue = defaultValue;
+    }
+
     public Map<E, R> convert(Iterable<E> elements) {
         for (E elem : elements) {
             convert(elem);
@@ -46,32 +81,260 @@ public class ListTaskScope<E, R> extends EnhancedTaskScope<R> {
         return getResultsAsMap();
     }
 
+    /**
+     * Converts the element in a new task or, if an equal element is being converted, reuses its task.
+     *
+     * @param elem the element to convert
+     * @return the task converting the element
+     */
     public Subtask<? extends R> convert(E elem) {
-        var subtask = fork(() -> mapper.call(elem));
-        elemToSubtask.put(elem, subtask);
-        return subtask;
+        return convert(elem, mapper, SUCCESS, (results, primitives, offset) -> {
+            R result = mapper.call(elem);
+            results[offset] = result;
+            return result;
+        });
+    }
+
+    /**
+     * Converts the element to a double stored without boxing, the result is only available with the getResultsAs... primitive methods.
+     * An element equal to an element being converted only reuses its task if converted with the same mapper instance.
+     *
+     * @param elem the element to convert
+     * @param doubleMapper the conversion to a double
+     * @return the task converting the element, its result is <code>null</code>
+     */
+    public Subtask<? extends R> convertToDouble(E elem, ToDoubleCallable<E> doubleMapper) {
+        return convert(elem, doubleMapper, DOUBLE_SUCCESS, (results, primitives, offset) -> {
+            primitives[offset] = Double.doubleToRawLongBits(doubleMapper.call(elem));
+            return null;
+        });
+    }
+
+    public Subtask<? extends R> convertToLong(E elem, ToLongCallable<E> longMapper) {
+        return convert(elem, longMapper, LONG_SUCCESS, (results, primitives, offset) -> {
+            primitives[offset] = longMapper.call(elem);
+            return null;
+        });
+    }
+
+    public Subtask<? extends R> convertToInt(E elem, ToIntCallable<E> intMapper) {
+        return convert(elem, intMapper, LONG_SUCCESS, (results, primitives, offset) -> {
+            primitives[offset] = intMapper.call(elem);
+            return null;
+        });
+    }
+
+    private Subtask<? extends R> convert(E elem, Object elemMapper, byte successState, SlotConversion<R> slotConversion) {
+        int index = elements.size();
+        elements.add(elem);
+        if (index >>> CHUNK_SHIFT == resultChunks.length) {
+            resultChunks = Arrays.copyOf(resultChunks, resultChunks.length * 2);
+            stateChunks = Arrays.copyOf(stateChunks, stateChunks.length * 2);
+            primitiveChunks = Arrays.copyOf(primitiveChunks, primitiveChunks.length * 2);
+        }
+        if ((index & CHUNK_MASK) == 0) {
+            resultChunks[index >>> CHUNK_SHIFT] = new Object[CHUNK_SIZE];
+            stateChunks[index >>> CHUNK_SHIFT] = new byte[CHUNK_SIZE];
+        }
+        if (successState != SUCCESS && primitiveChunks[index >>> CHUNK_SHIFT] == null) {
+            primitiveChunks[index >>> CHUNK_SHIFT] = new long[CHUNK_SIZE];
+        }
+        Object[] resultChunk = resultChunks[index >>> CHUNK_SHIFT];
+        byte[] stateChunk = stateChunks[index >>> CHUNK_SHIFT];
+        long[] primitiveChunk = primitiveChunks[index >>> CHUNK_SHIFT];
+        int offset = index & CHUNK_MASK;
+        InFlight conversion = new InFlight(index, elemMapper);
+        InFlight running = elem != null ? inFlight.putIfAbsent(elem, conversion) : null;
+        if (running != null && running.mapper == elemMapper) {
+            resultChunk[offset] = running.index; // the index of the element with the result
+            stateChunk[offset] = DUPLICATE;
+            return running.subtask;
+        }
+        boolean shared = elem != null && running == null; // not shared if converted meanwhile with another mapper
+        conversion.subtask = fork(() -> {
+            try {
+                R result = slotConversion.convert(resultChunk, primitiveChunk, offset);
+                stateChunk[offset] = successState;
+                return result;
+            } catch (Exception ex) {
+                stateChunk[offset] = FAILED;
+                throw ex;
+            } finally {
+                if (shared) inFlight.remove(elem, conversion);
+            }
+        });
+        if (shared && isShutdown()) { // the task may not run, no more tasks will run anyway
+            inFlight.remove(elem, conversion);
+        }
+        return conversion.subtask;
+    }
+
+    /**
+     * Gets the number of elements converted with this scope, including the duplicates.
+     *
+     * @return the number of elements
+     */
+    public int size() {
+        return elements.size();
+    }
+
+    /**
+     * Gets the result of the element at the given position, this method should be called after join().
+     *
+     * @param index the position of the element in the order it was converted
+     * @return the result, the default value if the conversion failed or was a primitive conversion, or <code>null</code> if not available
+     */
+    public R getResult(int index) {
+        ensureOwnerAndJoined();
+        int source = sourceIndex(Objects.checkIndex(index, elements.size()));
+        if (state(source) == SUCCESS) {
+            return result(source);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Gets the state of the conversion of the element at the given position, this method should be called after join().
+     *
+     * @param index the position of the element in the order it was converted
+     * @return the state of the conversion
+     */
+    public Subtask.State getState(int index) {
+        ensureOwnerAndJoined();
+        return switch (state(sourceIndex(Objects.checkIndex(index, elements.size())))) {
+            case SUCCESS, DOUBLE_SUCCESS, LONG_SUCCESS -> Subtask.State.SUCCESS;
+            case FAILED -> Subtask.State.FAILED;
+            default -> Subtask.State.UNAVAILABLE;
+        };
     }
 
     public List<R> getResultsAsList() {
-        return new ArrayList<>(getResultsAsMap().values());
+        if (!joinResults()) return new ArrayList<>();
+        List<R> results = new ArrayList<>(elements.size());
+        for (int i = 0; i < elements.size(); i++) {
+            int source = sourceIndex(i);
+            if (state(source) == SUCCESS) {
+                results.add(result(source));
+            } else if (defaultValue != null) {
+                results.add(defaultValue);
+            }
+        }
+        return results;
     }
 
     public Map<E, R> getResultsAsMap() {
+        if (!joinResults()) return new HashMap<>();
+        Map<E, R> results = new LinkedHashMap<>();
+        for (int i = 0; i < elements.size(); i++) {
+            int source = sourceIndex(i);
+            if (state(source) == SUCCESS) {
+                results.put(elements.get(i), result(source));
+            } else if (defaultValue != null) {
+                results.put(elements.get(i), defaultValue);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Gets the numeric results by position, this method calls join().
+     * The results of the primitive conversions are read without boxing, the results of {@link #convert(Object)} are unboxed Numbers.
+     *
+     * @param failedValue the value for the elements which conversion failed or returned <code>null</code>
+     * @return the results or an empty array if interrupted
+     * @throws ClassCastException if a result of {@link #convert(Object)} is not a Number
+     */
+    public double[] getResultsAsDoubles(double failedValue) {
+        if (!joinResults()) return new double[0];
+        double[] results = new double[elements.size()];
+        for (int i = 0; i < results.length; i++) {
+            int source = sourceIndex(i);
+            results[i] = switch (state(source)) {
+                case DOUBLE_SUCCESS -> Double.longBitsToDouble(primitive(source));
+                case LONG_SUCCESS -> primitive(source);
+                case SUCCESS -> result(source) != null ? ((Number) result(source)).doubleValue() : failedValue;
+                default -> failedValue;
+            };
+        }
+        return results;
+    }
+
+    public long[] getResultsAsLongs(long failedValue) {
+        if (!joinResults()) return new long[0];
+        long[] results = new long[elements.size()];
+        for (int i = 0; i < results.length; i++) {
+            int source = sourceIndex(i);
+            results[i] = switch (state(source)) {
+                case DOUBLE_SUCCESS -> (long) Double.longBitsToDouble(primitive(source));
+                case LONG_SUCCESS -> primitive(source);
+                case SUCCESS -> result(source) != null ? ((Number) result(source)).longValue() : failedValue;
+                default -> failedValue;
+            };
+        }
+        return results;
+    }
+
+    public int[] getResultsAsInts(int failedValue) {
+        if (!joinResults()) return new int[0];
+        int[] results = new int[elements.size()];
+        for (int i = 0; i < results.length; i++) {
+            int source = sourceIndex(i);
+            results[i] = switch (state(source)) {
+                case DOUBLE_SUCCESS -> (int) Double.longBitsToDouble(primitive(source));
+                case LONG_SUCCESS -> (int) primitive(source);
+                case SUCCESS -> result(source) != null ? ((Number) result(source)).intValue() : failedValue;
+                default -> failedValue;
+            };
+        }
+        return results;
+    }
+
+    private boolean joinResults() {
         try {
             join();
         } catch (InterruptedException ex) {
-            return new HashMap<>();
+            return false;
         }
         ensureOwnerAndJoined();
-        Map<E, R> results = new LinkedHashMap<>();
-        for (var elemSubstack : elemToSubtask.entrySet()) {
-            var subtask = elemSubstack.getValue();
-            if (subtask.state() == Subtask.State.SUCCESS) {
-                results.put(elemSubstack.getKey(), subtask.get());
-            } else if (getException() != null && getDefaultValue() != null) {
-                results.put(elemSubstack.getKey(), getDefaultValue());
-            }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked") // a successful conversion stores the mapper result
+    private R result(int index) {
+        return (R) resultChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    private long primitive(int index) {
+        return primitiveChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    private byte state(int index) {
+        return stateChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+    }
+
+    private int sourceIndex(int index) {
+        if (state(index) == DUPLICATE) {
+            return (Integer) resultChunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
         }
-        return results;
+        return index;
+    }
+
+    // The conversion of an element, shared with the equal elements converted meanwhile
+    private class InFlight {
+
+        private final int index;
+        private final Object mapper;
+        private Subtask<? extends R> subtask;
+
+        private InFlight(int index, Object mapper) {
+            this.index = index;
+            this.mapper = mapper;
+        }
+    }
+
+    // Stores the result of an element in its chunk slot
+    @FunctionalInterface
+    private interface SlotConversion<R> {
+        R convert(Object[] resultChunk, long[] primitiveChunk, int offset) throws Exception;
     }
 }
@@ -0,0 +1,210 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually.scope;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Stages of conversion executed at the same time in virtual threads.
+ * Each stage has a maximum of concurrent conversions and is connected to the next stage by a bounded queue,
+ * so a slow stage slows down the previous stages instead of accumulating the elements in memory.
+ * A stage returning <code>null</code> filters out the element.
+ *
+ * The stages are executed in an {@link EnhancedTaskScope}: if the pipeline fails on exception, the first exception
+ * stops all the stages and is thrown. Within a {@link Deadline}, the pipeline stops when the deadline is reached.
+ * The elements order is not kept.
+ *
+ * Example: <code>Pipeline.of(orderService::fetch, 100).then(customerService::enrich, 20).then(orderStore::persist, 10).process(orderIds, receipt -> {});</code>
+ *
+ * At the moment (JDK 21), the task scopes require the <code>--enable-preview</code> JVM start-up parameter.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public class Pipeline<I, O> {
+
+    private final static Object END = new Object();
+
+    private final List<Stage> stages;
+    private int queueCapacity = 100;
+    private boolean failOnException;
+
+    private Pipeline(List<Stage> stages) {
+        this.stages = stages;
+    }
+
+    /**
+     * Creates a pipeline with its first stage.
+     *
+     * @param <I> the type of the pipeline input elements
+     * @param <O> the type returned by the stage
+     * @param mapper the conversion of the stage
+     * @param maxConcurrency the maximum number of elements converted at the same time by the stage
+     * @return the new pipeline
+     */
+    public static <I, O> Pipeline<I, O> of(CallableFunction<I, O> mapper, int maxConcurrency) {
+        return new Pipeline<I, O>(new ArrayList<>()).addStage(mapper, maxConcurrency);
+    }
+
+    /**
+     * Creates a pipeline with the stages of this pipeline followed by the given stage.
+     *
+     * @param <N> the type returned by the new stage
+     * @param mapper the conversion of the new stage
+     * @param maxConcurrency the maximum number of elements converted at the same time by the new stage
+     * @return the new pipeline
+     */
+    public <N> Pipeline<I, N> then(CallableFunction<? super O, N> mapper, int maxConcurrency) {
+        Pipeline<I, N> pipeline = new Pipeline<>(new ArrayList<>(stages));
+        pipeline.queueCapacity = queueCapacity;
+        pipeline.failOnException = failOnException;
+        return pipeline.addStage(mapper, maxConcurrency);
+    }
+
+    @SuppressWarnings("unchecked") // the stages are chained by then(...) with matching types
+    private <T, R> Pipeline<I, O> addStage(CallableFunction<T, R> mapper, int maxConcurrency) {
+        if (maxConcurrency <= 0) throw new IllegalArgumentException("The maximum concurrency should be greater than 0");
+        stages.add(new Stage((CallableFunction<Object, Object>) mapper, maxConcurrency));
+        return this;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Sets the maximum number of elements waiting between 2 stages, default is 100.
+     *
+     * @param queueCapacity the capacity of the queues between the stages
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) throw new IllegalArgumentException("The queue capacity should be greater than 0");
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Define whether this pipeline should fail whenever a conversion fails, default is <code>false</code>.
+     * When <code>false</code> the elements that failed are skipped.
+     *
+     * @param failOnException true to fail on first failing conversion, false otherwise.
+     */
+    public void setFailOnException(boolean failOnException) {
+        this.failOnException = failOnException;
+    }
+
+    /**
+     * Converts the elements through all the stages and gives the results to the consumer.
+     * The consumer is called sequentially in a virtual thread of the pipeline.
+     * This method returns once all the elements have been consumed.
+     *
+     * @param inputs the elements to convert, read while the previous elements are converted
+     * @param consumer the consumer of the results of the last stage
+     * @throws Exception the first exception of a stage, the consumer or the inputs,
+     * or a TimeoutException if the {@link Deadline} was reached
+     */
+    public void process(Iterable<? extends I> inputs, Consumer<? super O> consumer) throws Exception {
+        List<BlockingQueue<Object>> queues = new ArrayList<>();
+        for (int i = 0; i <= stages.size(); i++) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+        AtomicBoolean completed = new AtomicBoolean();
+        try (EnhancedTaskScope<Object> scope = new EnhancedTaskScope<>()) {
+            scope.setFailOnException(true);
+            scope.fork(() -> {
+                for (I input : inputs) {
+                    queues.get(0).put(input);
+                }
+                queues.get(0).put(END);
+                return null;
+            });
+            for (int i = 0; i < stages.size(); i++) {
+                Stage stage = stages.get(i);
+                BlockingQueue<Object> inputQueue = queues.get(i);
+                BlockingQueue<Object> outputQueue = queues.get(i + 1);
+                AtomicInteger runningWorkers = new AtomicInteger(stage.maxConcurrency());
+                for (int worker = 0; worker < stage.maxConcurrency(); worker++) {
+                    scope.fork(() -> {
+                        runStage(scope, stage, inputQueue, outputQueue, runningWorkers);
+                        return null;
+                    });
+                }
+            }
+            BlockingQueue<Object> resultQueue = queues.get(stages.size());
+            scope.fork(() -> {
+                for (Object result = resultQueue.take(); result != END; result = resultQueue.take()) {
+                    @SuppressWarnings("unchecked") // the last stage returns O elements
+                    O output = (O) result;
+                    consumer.accept(output);
+                }
+                completed.set(true);
+                return null;
+            });
+            scope.join();
+            Throwable failure = scope.getException();
+            if (failure != null) {
+                throw failure instanceof Exception ex ? ex : new ExecutionException(failure);
+            }
+            if (!completed.get()) {
+                throw new TimeoutException("Deadline reached");
+            }
+        }
+    }
+
+    /**
+     * Converts the elements through all the stages.
+     *
+     * @param inputs the elements to convert
+     * @return the results of the last stage, in the order they were converted
+     * @throws Exception the first exception of a stage or a TimeoutException if the {@link Deadline} was reached
+     */
+    public List<O> convert(Iterable<? extends I> inputs) throws Exception {
+        List<O> results = new ArrayList<>();
+        process(inputs, results::add);
+        return results;
+    }
+
+    private void runStage(EnhancedTaskScope<Object> scope, Stage stage, BlockingQueue<Object> inputQueue, BlockingQueue<Object> outputQueue,
+            AtomicInteger runningWorkers) throws Exception {
+        for (Object input = inputQueue.take(); input != END; input = inputQueue.take()) {
+            Object result = null;
+            try {
+                result = stage.mapper().call(input);
+            } catch (InterruptedException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                if (failOnException) throw ex;
+            }
+            if (scope.isShutdown()) return; // the mapper may have ignored the interruption
+            if (result != null) outputQueue.put(result);
+        }
+        inputQueue.put(END); // for the other workers of the stage
+        if (runningWorkers.decrementAndGet() == 0) {
+            outputQueue.put(END);
+        }
+    }
+
+    private record Stage(CallableFunction<Object, Object> mapper, int maxConcurrency) {
+    }
+}
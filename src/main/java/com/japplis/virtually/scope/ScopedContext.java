@@ -0,0 +1,140 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually.scope;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The scoped values carried to the virtual threads started by this library.
+ * This is the ScopedValue replacement of InheritableThreadLocal for request context like the tenant, trace id or locale:
+ * the values are shared with the new threads instead of being copied for each thread.
+ *
+ * The registered scoped values bound in the current thread are captured by ListConverter and ThreadBucket
+ * and bound again in the virtual threads they start. The subtasks forked in a StructuredTaskScope,
+ * like EnhancedTaskScope and ListTaskScope, already inherit all the scoped values.
+ *
+ * At the moment (JDK 21), ScopedValue requires the <code>--enable-preview</code> JVM start-up parameter.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+public final class ScopedContext {
+
+    private final static CopyOnWriteArrayList<ScopedValue<?>> CARRIED_VALUES = new CopyOnWriteArrayList<>();
+    private final static ScopedContext EMPTY = new ScopedContext(null);
+
+    private final ScopedValue.Carrier carrier;
+
+    private ScopedContext(ScopedValue.Carrier carrier) {
+        this.carrier = carrier;
+    }
+
+    /**
+     * Creates a scoped value carried to the virtual threads started by this library.
+     *
+     * @param <T> the type of the value
+     * @return the new registered scoped value
+     */
+    public static <T> ScopedValue<T> newCarriedValue() {
+        ScopedValue<T> scopedValue = ScopedValue.newInstance();
+        CARRIED_VALUES.add(scopedValue);
+        return scopedValue;
+    }
+
+    /**
+     * Registers a scoped value to be carried to the virtual threads started by this library.
+     *
+     * @param scopedValue the scoped value to carry
+     */
+    public static void carry(ScopedValue<?> scopedValue) {
+        CARRIED_VALUES.addIfAbsent(scopedValue);
+    }
+
+    public static void stopCarrying(ScopedValue<?> scopedValue) {
+        CARRIED_VALUES.remove(scopedValue);
+    }
+
+    /**
+     * Binds the current value of a ThreadLocal to a scoped value.
+     * This helps to migrate step by step: the code setting the ThreadLocal stays the same and
+     * the code reading the value can use the scoped value in the current thread and in the started virtual threads.
+     *
+     * Example: <code>ScopedContext.whereThreadLocal(TENANT, TENANT_THREAD_LOCAL).run(() -> processRequest());</code>
+     *
+     * @param <T> the type of the value
+     * @param scopedValue the scoped value to bind
+     * @param threadLocal the thread local that has the value in the current thread
+     * @return the carrier to run the code with the scoped value bound
+     */
+    public static <T> ScopedValue.Carrier whereThreadLocal(ScopedValue<T> scopedValue, ThreadLocal<T> threadLocal) {
+        return ScopedValue.where(scopedValue, threadLocal.get());
+    }
+
+    /**
+     * Captures the carried scoped values bound in the current thread.
+     *
+     * @return the captured context
+     */
+    public static ScopedContext capture() {
+        ScopedValue.Carrier carrier = null;
+        for (ScopedValue<?> scopedValue : CARRIED_VALUES) {
+            if (scopedValue.isBound()) {
+                carrier = bind(carrier, scopedValue);
+            }
+        }
+        return carrier == null ? EMPTY : new ScopedContext(carrier);
+    }
+
+    private static <T> ScopedValue.Carrier bind(ScopedValue.Carrier carrier, ScopedValue<T> scopedValue) {
+        return carrier == null ? ScopedValue.where(scopedValue, scopedValue.get()) : carrier.where(scopedValue, scopedValue.get());
+    }
+
+    /**
+     * Gets a task that runs the given task with the captured scoped values bound.
+     *
+     * @param task the task to run in another thread
+     * @return the task with the captured scoped values or the same task if no values were captured
+     */
+    public Runnable wrap(Runnable task) {
+        if (carrier == null) return task;
+        return () -> carrier.run(task);
+    }
+
+    /**
+     * Gets a task that calls the given task with the captured scoped values bound.
+     *
+     * @param <V> the type returned by the task
+     * @param task the task to call in another thread
+     * @return the task with the captured scoped values or the same task if no values were captured
+     */
+    public <V> Callable<V> wrap(Callable<V> task) {
+        if (carrier == null) return task;
+        return () -> carrier.call(task);
+    }
+
+    /**
+     * Gets the scoped values currently registered to be carried.
+     *
+     * @return a copy of the carried scoped values
+     */
+    public static List<ScopedValue<?>> getCarriedValues() {
+        return new ArrayList<>(CARRIED_VALUES);
+    }
+}
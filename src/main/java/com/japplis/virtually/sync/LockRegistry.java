@@ -0,0 +1,104 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually.sync;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A registry of locks (or other synchronizers) per key.
+ * The lock of a key is created when first acquired and removed when the last user released it.
+ *
+ * The users of an existing lock are counted with compare-and-set, so the threads using the same key don't block each other.
+ * The map is only locked to add the lock of a key, a lock with no users is marked as removed before being removed from the map.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+class LockRegistry<L> {
+
+    private final static int REMOVED = -1;
+
+    private final ConcurrentHashMap<Object, KeyUsers<L>> keyLocks = new ConcurrentHashMap<>();
+    private final Supplier<L> lockFactory;
+
+    LockRegistry() {
+        this(() -> {
+            throw new IllegalStateException("No default lock factory");
+        });
+    }
+
+    LockRegistry(Supplier<L> lockFactory) {
+        this.lockFactory = lockFactory;
+    }
+
+    /**
+     * Gets the lock associated with the key, creating it if needed.
+     * Each call to this method needs to be followed by a call to {@link #release(Object)}.
+     *
+     * @param key the key of the lock
+     * @return the lock associated with the key
+     */
+    L acquire(Object key) {
+        return acquire(key, lockFactory);
+    }
+
+    /**
+     * Gets the lock associated with the key, creating it with the given factory if needed.
+     * Each call to this method needs to be followed by a call to {@link #release(Object)}.
+     *
+     * @param key the key of the lock
+     * @param keyLockFactory the factory of the lock if not already created for this key
+     * @return the lock associated with the key
+     */
+    L acquire(Object key, Supplier<L> keyLockFactory) {
+        while (true) {
+            KeyUsers<L> keyUsers = keyLocks.get(key);
+            if (keyUsers == null) {
+                keyUsers = keyLocks.computeIfAbsent(key, k -> new KeyUsers<>(keyLockFactory.get()));
+            }
+            int count = keyUsers.count.get();
+            if (count >= 0) {
+                if (keyUsers.count.compareAndSet(count, count + 1)) return keyUsers.lock;
+            } else {
+                keyLocks.remove(key, keyUsers); // removed by the last user, retry with a new lock
+            }
+        }
+    }
+
+    /**
+     * Releases the usage of the lock for the key, the lock is removed from the registry if not used anymore.
+     *
+     * @param key the key of the lock
+     */
+    void release(Object key) {
+        KeyUsers<L> keyUsers = keyLocks.get(key);
+        if (keyUsers != null && keyUsers.count.decrementAndGet() == 0 && keyUsers.count.compareAndSet(0, REMOVED)) {
+            keyLocks.remove(key, keyUsers);
+        }
+    }
+
+    private static class KeyUsers<L> {
+        private final L lock;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private KeyUsers(L lock) {
+            this.lock = lock;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually.sync;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Computes the lock key of a method annotated with {@link SynchronizedOn} from its arguments.
+ * The parameters and properties lookups are done once per method or class.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+final class MethodLockKeys {
+
+    private final static Map<Method, MethodLockKeys> METHOD_KEYS = new ConcurrentHashMap<>();
+    private final static ClassValue<Map<String, Function<Object, Object>>> PROPERTY_GETTERS = new ClassValue<>() {
+        @Override
+        protected Map<String, Function<Object, Object>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final String lockName;
+    private final int[] parameterIndexes;
+    private final String[][] propertyPaths;
+
+    private MethodLockKeys(Method method, SynchronizedOn synchronizedOn, String[] parameterNames) {
+        lockName = synchronizedOn.lockName().isEmpty() ? method.toString() : synchronizedOn.lockName();
+        String[] keyParameters = synchronizedOn.value();
+        if (keyParameters.length == 0) throw new IllegalArgumentException("No parameter specified for @SynchronizedOn of " + method);
+        parameterIndexes = new int[keyParameters.length];
+        propertyPaths = new String[keyParameters.length][];
+        for (int i = 0; i < keyParameters.length; i++) {
+            String[] path = keyParameters[i].split("\\.");
+            parameterIndexes[i] = parameterIndex(method, parameterNames, path[0]);
+            propertyPaths[i] = Arrays.copyOfRange(path, 1, path.length);
+        }
+    }
+
+    /**
+     * Gets the lock key for a call of the method.
+     *
+     * @param method the method annotated with {@link SynchronizedOn}
+     * @param parameterNames the names of the parameters or <code>null</code> if unknown
+     * @param args the arguments of the method call
+     * @return the lock key
+     */
+    static Object lockKey(Method method, String[] parameterNames, Object[] args) {
+        MethodLockKeys methodKeys = METHOD_KEYS.get(method);
+        if (methodKeys == null) {
+            SynchronizedOn synchronizedOn = method.getAnnotation(SynchronizedOn.class);
+            methodKeys = new MethodLockKeys(method, synchronizedOn, parameterNames);
+            METHOD_KEYS.putIfAbsent(method, methodKeys);
+        }
+        return methodKeys.lockKey(args);
+    }
+
+    private Object lockKey(Object[] args) {
+        if (parameterIndexes.length == 1) {
+            return new LockKey(lockName, value(args, 0));
+        }
+        Object[] values = new Object[parameterIndexes.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = value(args, i);
+        }
+        return new LockKey(lockName, Arrays.asList(values));
+    }
+
+    private Object value(Object[] args, int keyIndex) {
+        Object value = args[parameterIndexes[keyIndex]];
+        for (String property : propertyPaths[keyIndex]) {
+            if (value == null) break;
+            Class<?> type = value.getClass();
+            value = PROPERTY_GETTERS.get(type)
+                    .computeIfAbsent(property, name -> propertyGetter(type, name))
+                    .apply(value);
+        }
+        return value;
+    }
+
+    private static int parameterIndex(Method method, String[] parameterNames, String parameter) {
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            String name = parameterNames != null && i < parameterNames.length ? parameterNames[i] : parameters[i].getName();
+            if (name.equals(parameter)) return i;
+        }
+        try {
+            int index = Integer.parseInt(parameter);
+            if (index >= 0 && index < parameters.length) return index;
+        } catch (NumberFormatException ex) {
+            // Not an index
+        }
+        throw new IllegalArgumentException("Parameter " + parameter + " not found in " + method);
+    }
+
+    private static Function<Object, Object> propertyGetter(Class<?> type, String name) {
+        String capitalized = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (String methodName : new String[] { name, "get" + capitalized, "is" + capitalized }) {
+            try {
+                Method getter = type.getMethod(methodName);
+                getter.trySetAccessible();
+                return value -> {
+                    try {
+                        return getter.invoke(value);
+                    } catch (IllegalAccessException | InvocationTargetException ex) {
+                        throw new IllegalStateException("Failed to get property " + name + " of " + type, ex);
+                    }
+                };
+            } catch (NoSuchMethodException ex) {
+                // Try next method name
+            }
+        }
+        for (Class<?> fieldType = type; fieldType != null; fieldType = fieldType.getSuperclass()) {
+            try {
+                Field field = fieldType.getDeclaredField(name);
+                field.trySetAccessible();
+                return value -> {
+                    try {
+                        return field.get(value);
+                    } catch (IllegalAccessException ex) {
+                        throw new IllegalStateException("Property " + name + " of " + type + " is not accessible", ex);
+                    }
+                };
+            } catch (NoSuchFieldException ex) {
+                // Try super class
+            }
+        }
+        throw new IllegalArgumentException("Property " + name + " not found in " + type);
+    }
+
+    private record LockKey(String lockName, Object value) {
+    }
+}
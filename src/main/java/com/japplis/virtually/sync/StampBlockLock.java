@@ -0,0 +1,97 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually.sync;
+
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
+
+/**
+ * A StampedLock with optimistic read and AutoCloseable blocks.
+ * Optimistic reads don't write to the lock so readers of very short critical sections don't contend with each other.
+ *
+ * Note that this lock is not reentrant.
+ *
+ * @author Anthony Goubard - Japplis
+ */
+@SuppressWarnings("serial") // locks are not meant to be serialized
+public class StampBlockLock extends StampedLock {
+
+    /**
+     * Reads without locking and reads again with the read lock if a write happened during the first read.
+     * The reader may see an inconsistent state during the optimistic read, so it should only read fields
+     * and not have side effects. A RuntimeException thrown during an invalidated optimistic read is ignored.
+     *
+     * @param <R> the type returned by the reader
+     * @param reader the read block
+     * @return the result of the read block
+     */
+    public <R> R tryOptimisticRead(Supplier<R> reader) {
+        long stamp = tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                R result = reader.get();
+                if (validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException ex) {
+                if (validate(stamp)) throw ex; // not caused by a concurrent write
+            }
+        }
+        stamp = readLock();
+        try {
+            return reader.get();
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Runs the function with the exclusive write lock.
+     *
+     * @param <R> the type returned by the function
+     * @param writer the write block
+     * @return the result of the write block
+     */
+    public <R> R runWrite(Supplier<R> writer) {
+        long stamp = writeLock();
+        try {
+            return writer.get();
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    public Block lockReadBlock() {
+        return new Block(this, readLock());
+    }
+
+    public Block lockWriteBlock() {
+        return new Block(this, writeLock());
+    }
+
+    /**
+     * An acquired read or write lock that is released when closed.
+     */
+    public record Block(StampedLock lock, long stamp) implements AutoCloseable {
+
+        @Override
+        public void close() {
+            lock.unlock(stamp);
+        }
+    }
+}
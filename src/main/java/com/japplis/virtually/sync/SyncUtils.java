@@ -17,10 +17,15 @@
  */
 package com.japplis.virtually.sync;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.time.Duration;
+import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -32,8 +37,18 @@ import java.util.function.Supplier;
  */
 public class SyncUtils {
 
-    private final static Map<Object, ReentrantLock> OBJECT_LOCKS = new HashMap<>();
-    private final static ReentrantLock OBJECT_LOCK = new ReentrantLock();
+    private final static LockRegistry<ReentrantLock> OBJECT_LOCKS = new LockRegistry<>(ReentrantLock::new);
+    private final static Comparator<Object> LOCK_ORDER = SyncUtils::compareLockKeys;
+    private final static BlockLock TIED_KEYS_LOCK = new BlockLock();
+    private final static LockRegistry<ReentrantReadWriteLock> READ_WRITE_LOCKS = new LockRegistry<>(ReentrantReadWriteLock::new);
+    private final static LockRegistry<Semaphore> KEY_PERMITS = new LockRegistry<>();
+    private final static StackWalker CALL_STACK = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+    private final static ClassValue<BlockLock> CLASS_LOCKS = new ClassValue<>() {
+        @Override
+        protected BlockLock computeValue(Class<?> type) {
+            return new BlockLock();
+        }
+    };
 
     // Only static methods
     private SyncUtils() {
@@ -41,16 +56,31 @@ public class SyncUtils {
 
     /**
      * Run the function in a synchronized way using a ReentrantLock instead of a synchronized block to avoid pinning a virtual thread.
-     * Note that the function is synchronized on the caller.
+     * Note that the function is synchronized on the caller class, using the lock of {@link #forClass(Class)}.
+     * The lock key used to be the canonical name of the caller class: code synchronizing on
+     * <code>MyClass.class.getCanonicalName()</code> to exclude this method should now use <code>MyClass.class</code>.
+     * As finding the caller class requires walking the stack, prefer <code>runSynchronized(forClass(MyClass.class), function)</code>
+     * for frequently called code.
      *
      * @param <R> the type returned by the function
      * @param function the synchronized block
      * @return the result of the synchronized block
      */
     public static <R> R runSynchronized(Supplier<R> function) {
-        StackWalker callStack = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
-        String callerCannonicalClassName = callStack.getCallerClass().getCanonicalName(); // synchronized on the class level
-        return runSynchronized(callerCannonicalClassName, function);
+        Class<?> callerClass = CALL_STACK.getCallerClass(); // synchronized on the class level
+        return runSynchronized(forClass(callerClass), function);
+    }
+
+    /**
+     * Gets the lock associated with a class.
+     * The lock is created once per class and can be stored in a static field or used directly as lock key of the other methods.
+     * Using the class itself as lock key of the other methods also uses this lock.
+     *
+     * @param type the class to synchronize upon
+     * @return the lock of the class
+     */
+    public static BlockLock forClass(Class<?> type) {
+        return CLASS_LOCKS.get(type);
     }
 
     /**
@@ -88,35 +118,298 @@ public class SyncUtils {
         }
     }
 
+    /**
+     * Run the function with the locks of all the keys.
+     * The locks are always acquired in the same order to avoid deadlocks between calls using the same keys.
+     *
+     * @param <R> the type returned by the function
+     * @param lockKeys the objects to synchronized upon
+     * @param function the synchronized block
+     * @return the result of the synchronized block
+     */
+    public static <R> R runSynchronizedAll(Collection<?> lockKeys, Supplier<R> function) {
+        List<Object> orderedKeys = orderedLockKeys(lockKeys);
+        List<ReentrantLock> locks = new ArrayList<>(orderedKeys.size());
+        try {
+            for (Object lockKey : orderedKeys) {
+                locks.add(lock(lockKey));
+            }
+            return function.get();
+        } finally {
+            unlockAll(locks, orderedKeys);
+        }
+    }
+
+    public static <R> R callSynchronizedAll(Collection<?> lockKeys, Callable<R> function) throws Exception {
+        List<Object> orderedKeys = orderedLockKeys(lockKeys);
+        List<ReentrantLock> locks = new ArrayList<>(orderedKeys.size());
+        try {
+            for (Object lockKey : orderedKeys) {
+                locks.add(lock(lockKey));
+            }
+            return function.call();
+        } finally {
+            unlockAll(locks, orderedKeys);
+        }
+    }
+
+    /**
+     * Run the function with the locks of all the keys if they can all be acquired within the maximum wait time.
+     * If not, the locks already acquired are released and a TimeoutException is thrown.
+     *
+     * @param <R> the type returned by the function
+     * @param lockKeys the objects to synchronized upon
+     * @param maxWait the maximum time to wait for all the locks
+     * @param function the synchronized block
+     * @return the result of the synchronized block
+     * @throws TimeoutException if the locks couldn't be acquired in time
+     * @throws InterruptedException if the thread is interrupted while waiting for the locks
+     * @throws Exception if the function failed
+     */
+    public static <R> R callSynchronizedAll(Collection<?> lockKeys, Duration maxWait, Callable<R> function) throws Exception {
+        List<Object> orderedKeys = orderedLockKeys(lockKeys);
+        List<ReentrantLock> locks = new ArrayList<>(orderedKeys.size());
+        long deadline = System.nanoTime() + maxWait.toNanos();
+        try {
+            for (Object lockKey : orderedKeys) {
+                ReentrantLock lock = tryLock(lockKey, deadline - System.nanoTime());
+                if (lock == null) {
+                    throw new TimeoutException("Failed to acquire the locks of " + orderedKeys.size() + " keys in " + maxWait);
+                }
+                locks.add(lock);
+            }
+            return function.call();
+        } finally {
+            unlockAll(locks, orderedKeys);
+        }
+    }
+
+    /**
+     * Acquires the ReentrantLock associated with the lock key.
+     * The lock needs to be released with {@link #unlock(ReentrantLock, Object)}.
+     *
+     * @param lockKey the object to synchronized upon (can also be a ReentrantLock or a Class for the {@link #forClass(Class)} lock)
+     * @return the acquired lock
+     */
     public static ReentrantLock lock(Object lockKey) {
+        if (lockKey instanceof Class<?> type) lockKey = forClass(type);
         if (lockKey instanceof ReentrantLock lock) {
             lock.lock();
             return lock;
         }
-        OBJECT_LOCK.lock();
-        ReentrantLock objectLock = OBJECT_LOCKS.get(lockKey);
+        ReentrantLock objectLock = OBJECT_LOCKS.acquire(lockKey);
+        objectLock.lock();
+        return objectLock;
+    }
+
+    public static void unlock(ReentrantLock lock, Object lockKey) {
+        lock.unlock();
+        if (!(lockKey instanceof ReentrantLock) && !(lockKey instanceof Class)) {
+            OBJECT_LOCKS.release(lockKey);
+        }
+    }
+
+    private static ReentrantLock tryLock(Object lockKey, long timeoutNanos) throws InterruptedException {
+        if (lockKey instanceof Class<?> type) lockKey = forClass(type);
+        if (lockKey instanceof ReentrantLock lock) {
+            return lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS) ? lock : null;
+        }
+        ReentrantLock objectLock = OBJECT_LOCKS.acquire(lockKey);
+        boolean locked = false;
+        try {
+            locked = objectLock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+        } finally {
+            if (!locked) {
+                OBJECT_LOCKS.release(lockKey);
+            }
+        }
+        return locked ? objectLock : null;
+    }
+
+    private static void unlockAll(List<ReentrantLock> locks, List<Object> orderedKeys) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            unlock(locks.get(i), orderedKeys.get(i));
+        }
+    }
+
+    private static List<Object> orderedLockKeys(Collection<?> lockKeys) {
+        List<Object> orderedKeys = new ArrayList<>(new LinkedHashSet<>(lockKeys));
+        orderedKeys.sort(LOCK_ORDER);
+        for (int i = 1; i < orderedKeys.size(); i++) {
+            if (LOCK_ORDER.compare(orderedKeys.get(i - 1), orderedKeys.get(i)) == 0) {
+                orderedKeys.add(0, TIED_KEYS_LOCK);
+                break;
+            }
+        }
+        return orderedKeys;
+    }
+
+    /**
+     * Order of the lock keys: by hash code, then by natural order for comparable keys of the same class.
+     * Different keys with no order between them (same hash code and not comparable) are locked in the collection order,
+     * so the calls with such keys first acquire a shared lock: only one of them at a time can hold several of these keys.
+     */
+    private static int compareLockKeys(Object key1, Object key2) {
+        int hashOrder = Integer.compare(key1.hashCode(), key2.hashCode());
+        if (hashOrder != 0) return hashOrder;
+        if (key1.getClass() != key2.getClass()) return key1.getClass().getName().compareTo(key2.getClass().getName());
+        if (key1 instanceof Comparable<?>) {
+            @SuppressWarnings("unchecked") // keys of the same class
+            Comparable<Object> comparableKey = (Comparable<Object>) key1;
+            return comparableKey.compareTo(key2);
+        }
+        return 0;
+    }
+
+    /**
+     * Run the function with the read lock of a ReentrantReadWriteLock associated with the lock key.
+     * Multiple threads can run read functions at the same time for the same key as long as no thread is running a write function.
+     *
+     * @param <R> the type returned by the function
+     * @param lockKey the object to synchronized upon (can also be a ReentrantReadWriteLock)
+     * @param function the read block
+     * @return the result of the read block
+     */
+    public static <R> R runRead(Object lockKey, Supplier<R> function) {
+        Lock readLock = lockRead(lockKey);
+        try {
+            return function.get();
+        } finally {
+            unlockReadWrite(readLock, lockKey);
+        }
+    }
+
+    /**
+     * Run the function with the write lock of a ReentrantReadWriteLock associated with the lock key.
+     * Only one thread can run a write function for the same key and no read function will run at the same time.
+     *
+     * @param <R> the type returned by the function
+     * @param lockKey the object to synchronized upon (can also be a ReentrantReadWriteLock)
+     * @param function the write block
+     * @return the result of the write block
+     */
+    public static <R> R runWrite(Object lockKey, Supplier<R> function) {
+        Lock writeLock = lockWrite(lockKey);
+        try {
+            return function.get();
+        } finally {
+            unlockReadWrite(writeLock, lockKey);
+        }
+    }
+
+    public static <R> R callRead(Object lockKey, Callable<R> function) throws Exception {
+        Lock readLock = lockRead(lockKey);
+        try {
+            return function.call();
+        } finally {
+            unlockReadWrite(readLock, lockKey);
+        }
+    }
+
+    public static <R> R callWrite(Object lockKey, Callable<R> function) throws Exception {
+        Lock writeLock = lockWrite(lockKey);
+        try {
+            return function.call();
+        } finally {
+            unlockReadWrite(writeLock, lockKey);
+        }
+    }
+
+    /**
+     * Acquires the read lock associated with the lock key.
+     * The lock needs to be released with {@link #unlockReadWrite(Lock, Object)}.
+     *
+     * @param lockKey the object to synchronized upon (can also be a ReentrantReadWriteLock)
+     * @return the acquired read lock
+     */
+    public static Lock lockRead(Object lockKey) {
+        Lock readLock = readWriteLock(lockKey).readLock();
+        readLock.lock();
+        return readLock;
+    }
+
+    /**
+     * Acquires the write lock associated with the lock key.
+     * The lock needs to be released with {@link #unlockReadWrite(Lock, Object)}.
+     *
+     * @param lockKey the object to synchronized upon (can also be a ReentrantReadWriteLock)
+     * @return the acquired write lock
+     */
+    public static Lock lockWrite(Object lockKey) {
+        Lock writeLock = readWriteLock(lockKey).writeLock();
+        writeLock.lock();
+        return writeLock;
+    }
+
+    public static void unlockReadWrite(Lock lock, Object lockKey) {
+        lock.unlock();
+        if (!(lockKey instanceof ReentrantReadWriteLock)) {
+            READ_WRITE_LOCKS.release(lockKey);
+        }
+    }
+
+    private static ReentrantReadWriteLock readWriteLock(Object lockKey) {
+        if (lockKey instanceof ReentrantReadWriteLock lock) {
+            return lock;
+        }
+        return READ_WRITE_LOCKS.acquire(lockKey);
+    }
+
+    /**
+     * Run the function when one of the permits associated with the key is available.
+     * At most <code>permits</code> threads will run a function for the same key at the same time.
+     *
+     * The semaphore of the key is created by the first caller and removed when no thread uses it anymore,
+     * so all the callers using the same key at the same time should ask for the same number of permits.
+     *
+     * @param <R> the type returned by the function
+     * @param key the key of the semaphore
+     * @param permits the maximum number of concurrent functions for the key, should be greater than 0
+     * @param function the block to execute when a permit is available
+     * @return the result of the block
+     */
+    public static <R> R runWithPermits(Object key, int permits, Supplier<R> function) {
+        Semaphore keyPermits = keyPermits(key, permits);
         try {
-            if (objectLock == null) {
-                objectLock = new ReentrantLock();
-                OBJECT_LOCKS.put(lockKey, objectLock);
+            keyPermits.acquireUninterruptibly();
+            try {
+                return function.get();
+            } finally {
+                keyPermits.release();
             }
         } finally {
-            OBJECT_LOCK.unlock();
+            KEY_PERMITS.release(key);
         }
-        objectLock.lock();
-        return objectLock;
     }
 
-    public static void unlock(ReentrantLock lock, Object lockKey) {
-        OBJECT_LOCK.lock();
-        try{
-            int waiting = lock.getQueueLength();
-            lock.unlock();
-            if (waiting == 0) {
-                OBJECT_LOCKS.remove(lockKey);
+    /**
+     * Call the function when one of the permits associated with the key is available.
+     *
+     * @param <R> the type returned by the function
+     * @param key the key of the semaphore
+     * @param permits the maximum number of concurrent functions for the key, should be greater than 0
+     * @param function the block to execute when a permit is available
+     * @return the result of the block
+     * @throws InterruptedException if the thread is interrupted while waiting for a permit
+     * @throws Exception if the function failed
+     * @see #runWithPermits(Object, int, Supplier)
+     */
+    public static <R> R callWithPermits(Object key, int permits, Callable<R> function) throws Exception {
+        Semaphore keyPermits = keyPermits(key, permits);
+        try {
+            keyPermits.acquire();
+            try {
+                return function.call();
+            } finally {
+                keyPermits.release();
             }
         } finally {
-            OBJECT_LOCK.unlock();
+            KEY_PERMITS.release(key);
         }
     }
+
+    private static Semaphore keyPermits(Object key, int permits) {
+        if (permits <= 0) throw new IllegalArgumentException("The number of permits should be greater than 0");
+        return KEY_PERMITS.acquire(key, () -> new Semaphore(permits));
+    }
 }
@@ -17,11 +17,13 @@
  */
 package com.japplis.virtually.sync;
 
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
 
 /**
  *
@@ -32,21 +34,62 @@ public class SynchronizedAspect {
 
     @Around("@annotation(com.japplis.virtually.sync.Synchronized) && execution(* *(..))")
     public Object executeSynchronized(ProceedingJoinPoint pjp) throws Throwable {
-        ReentrantLock lock = SyncUtils.lock(pjp.getThis());
+        Object lockKey = pjp.getThis();
+        ReentrantLock lock = SyncUtils.lock(lockKey);
         try {
             return pjp.proceed();
         } finally {
-            lock.unlock();
+            SyncUtils.unlock(lock, lockKey);
         }
     }
 
     @Around("@annotation(com.japplis.virtually.sync.SynchronizedMethod) && execution(* *(..))")
     public Object executeSynchronizedMethod(ProceedingJoinPoint pjp) throws Throwable {
-        ReentrantLock lock = SyncUtils.lock(pjp.getSignature().toLongString());
+        String lockKey = pjp.getSignature().toLongString();
+        ReentrantLock lock = SyncUtils.lock(lockKey);
         try {
             return pjp.proceed();
         } finally {
-            lock.unlock();
+            SyncUtils.unlock(lock, lockKey);
         }
     }
+
+    @Around("@annotation(com.japplis.virtually.sync.SynchronizedOn) && execution(* *(..))")
+    public Object executeSynchronizedOn(ProceedingJoinPoint pjp) throws Throwable {
+        MethodSignature signature = (MethodSignature) pjp.getSignature();
+        Object lockKey = MethodLockKeys.lockKey(signature.getMethod(), signature.getParameterNames(), pjp.getArgs());
+        ReentrantLock lock = SyncUtils.lock(lockKey);
+        try {
+            return pjp.proceed();
+        } finally {
+            SyncUtils.unlock(lock, lockKey);
+        }
+    }
+
+    @Around("@annotation(com.japplis.virtually.sync.ReadLocked) && execution(* *(..))")
+    public Object executeReadLocked(ProceedingJoinPoint pjp) throws Throwable {
+        Object lockKey = readWriteLockKey(pjp);
+        Lock lock = SyncUtils.lockRead(lockKey);
+        try {
+            return pjp.proceed();
+        } finally {
+            SyncUtils.unlockReadWrite(lock, lockKey);
+        }
+    }
+
+    @Around("@annotation(com.japplis.virtually.sync.WriteLocked) && execution(* *(..))")
+    public Object executeWriteLocked(ProceedingJoinPoint pjp) throws Throwable {
+        Object lockKey = readWriteLockKey(pjp);
+        Lock lock = SyncUtils.lockWrite(lockKey);
+        try {
+            return pjp.proceed();
+        } finally {
+            SyncUtils.unlockReadWrite(lock, lockKey);
+        }
+    }
+
+    private static Object readWriteLockKey(ProceedingJoinPoint pjp) {
+        Object target = pjp.getThis();
+        return target != null ? target : pjp.getSignature().getDeclaringType();
+    }
 }
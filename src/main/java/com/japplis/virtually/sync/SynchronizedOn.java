@@ -0,0 +1,52 @@
+/*
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Copyright 2023 Japplis.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.japplis.virtually.sync;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation that specifies that the method can only be accessed by one thread at a time for the same parameter values.
+ * Calls with different values for the selected parameters are executed concurrently.
+ * This annotation uses ReentrantLock that avoids pinning the virtual thread to the platform thread.
+ *
+ * Example: <code>@SynchronizedOn("product.id") void updateStock(Product product, int quantity)</code>
+ *
+ * @author Anthony Goubard - Japplis
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SynchronizedOn {
+
+    /**
+     * The parameters used as lock key.
+     * A parameter is specified by its name (requires the parameter names in the class file) or its index starting at 0,
+     * optionally followed by a property path like <code>product.id</code> or <code>0.id</code>.
+     * A property is a no-argument method with the same name, a getter or a field.
+     *
+     * @return the parameters of the lock key
+     */
+    String[] value();
+
+    /**
+     * The name of the lock. Methods with the same lock name will not be executed at the same time for the same key.
+     * By default, the lock name is the signature of the method.
+     *
+     * @return the name of the lock
+     */
+    String lockName() default "";
+}
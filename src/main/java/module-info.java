@@ -24,4 +24,5 @@ module com.japplis.virtually {
     
     requires org.aspectj.runtime;
     requires java.compiler;
+    requires java.management;
 }
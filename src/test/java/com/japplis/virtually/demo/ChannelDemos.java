@@ -0,0 +1,180 @@
+package com.japplis.virtually.demo;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.japplis.virtually.BufferPool;
+import com.japplis.virtually.ReadAheadByteChannel;
+import com.japplis.virtually.ReadByteChannel;
+import com.japplis.virtually.Threads;
+import com.japplis.virtually.WriteByteChannel;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChannelDemos {
+
+    private byte[] data = createData(1_000_000);
+
+    @Test
+    void readHeapBuffer() throws IOException {
+        try (ReadByteChannel channel = new ReadByteChannel(new ByteArrayInputStream(data))) {
+            assertArrayEquals(data, readAll(channel, ByteBuffer.allocate(64 * 1024)));
+        }
+    }
+
+    @Test
+    void readDirectBuffer() throws IOException {
+        try (ReadByteChannel channel = new ReadByteChannel(new ByteArrayInputStream(data))) {
+            assertArrayEquals(data, readAll(channel, ByteBuffer.allocateDirect(64 * 1024)));
+        }
+    }
+
+    @Test
+    void readAhead() throws IOException {
+        try (ReadAheadByteChannel channel = new ReadAheadByteChannel(new ByteArrayInputStream(data), 3, 10_000)) {
+            assertArrayEquals(data, readAll(channel, ByteBuffer.allocate(64 * 1024)));
+            assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+        }
+    }
+
+    @Test
+    void readAheadFailingStream() throws IOException {
+        ByteArrayInputStream failingStream = new ByteArrayInputStream(data) {
+            @Override
+            public int read(byte[] buffer, int offset, int length) {
+                throw new IllegalStateException("Stream failure");
+            }
+        };
+        try (ReadAheadByteChannel channel = new ReadAheadByteChannel(failingStream)) {
+            IOException ex = assertThrows(IOException.class, () -> channel.read(ByteBuffer.allocate(100)));
+            assertInstanceOf(IllegalStateException.class, ex.getCause());
+        }
+    }
+
+    @Test
+    void readAheadSlowStream() throws IOException {
+        byte[] slowData = createData(200_000);
+        long start = System.currentTimeMillis();
+        try (ReadByteChannel channel = new ReadByteChannel(new SlowInputStream(slowData))) {
+            processSlowly(channel);
+        }
+        long readTime = System.currentTimeMillis() - start;
+        start = System.currentTimeMillis();
+        try (ReadAheadByteChannel channel = new ReadAheadByteChannel(new SlowInputStream(slowData), 2, 10_000)) {
+            processSlowly(channel);
+        }
+        long readAheadTime = System.currentTimeMillis() - start;
+        System.out.println("ReadByteChannel: " + readTime + " ms, ReadAheadByteChannel: " + readAheadTime + " ms.");
+    }
+
+    @Test
+    void writeSmallBuffers() throws IOException {
+        AtomicInteger streamWrites = new AtomicInteger();
+        ByteArrayOutputStream result = new ByteArrayOutputStream() {
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                streamWrites.incrementAndGet();
+                super.write(bytes, offset, length);
+            }
+        };
+        try (WriteByteChannel channel = new WriteByteChannel(result)) {
+            for (int i = 0; i < data.length; i += 100) {
+                channel.write(ByteBuffer.wrap(data, i, Math.min(100, data.length - i)));
+            }
+        }
+        assertArrayEquals(data, result.toByteArray());
+        System.out.println("Stream writes for " + data.length / 100 + " channel writes: " + streamWrites.get());
+    }
+
+    @Test
+    void gatherWrite() throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        ByteBuffer header = ByteBuffer.allocateDirect(10).put(data, 0, 10).flip();
+        ByteBuffer body = ByteBuffer.wrap(data, 10, data.length - 10);
+        try (WriteByteChannel channel = new WriteByteChannel(result)) {
+            assertEquals(data.length, channel.write(new ByteBuffer[] { header, body }));
+        }
+        assertArrayEquals(data, result.toByteArray());
+    }
+
+    @Test
+    void writeWithMaxDelay() throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (WriteByteChannel channel = new WriteByteChannel(result, 8192, Duration.ofMillis(20))) {
+            channel.write(ByteBuffer.wrap(data, 0, 100));
+            assertEquals(0, result.size());
+            Threads.sleep(100);
+            assertArrayEquals(Arrays.copyOf(data, 100), result.toByteArray());
+        }
+    }
+
+    @Test
+    void bufferPool() {
+        BufferPool pool = new BufferPool(1024, 64 * 1024, 16, true);
+        ByteBuffer buffer = pool.acquire(3000);
+        assertTrue(buffer.isDirect());
+        assertEquals(4096, buffer.capacity());
+        buffer.putInt(42);
+        pool.release(buffer);
+        ByteBuffer reusedBuffer = pool.acquire(4000);
+        assertSame(buffer, reusedBuffer);
+        assertEquals(0, reusedBuffer.position());
+        assertEquals(128 * 1024, pool.acquire(128 * 1024).capacity());
+    }
+
+    private static void processSlowly(ReadableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(10_000);
+        while (channel.read(buffer) >= 0) {
+            if (!buffer.hasRemaining()) {
+                Threads.sleep(10); // parsing
+                buffer.clear();
+            }
+        }
+    }
+
+    private static byte[] readAll(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                result.write(buffer.get());
+            }
+            buffer.clear();
+        }
+        return result.toByteArray();
+    }
+
+    private static byte[] createData(int size) {
+        byte[] data = new byte[size];
+        new Random(42).nextBytes(data);
+        return data;
+    }
+
+    // Simulates a slow network stream
+    private static class SlowInputStream extends ByteArrayInputStream {
+
+        private SlowInputStream(byte[] data) {
+            super(data);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            Threads.sleep(10);
+            return super.read(buffer, offset, Math.min(length, 10_000));
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.japplis.virtually.demo;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import com.japplis.virtually.ListConverter;
+import com.japplis.virtually.Threads;
+import com.japplis.virtually.demo.shop.PriceService;
+import com.japplis.virtually.demo.shop.Product;
+import com.japplis.virtually.demo.shop.ShopFactory;
+import com.japplis.virtually.scope.Deadline;
+import com.japplis.virtually.scope.EnhancedTaskScope;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeadlineDemos {
+
+    private PriceService priceService = PriceService.getInstance();
+
+    @Test
+    void convertWithDeadline() throws Exception {
+        List<Product> products = ShopFactory.createManyProducts(1_000);
+        long start = System.currentTimeMillis();
+        // The price service takes 500 ms per call
+        List<Double> prices = Deadline.within(Duration.ofMillis(200)).call(() ->
+                ListConverter.convertList(products, priceService::retreivePrice));
+        long convertTime = System.currentTimeMillis() - start;
+        assertTrue(prices.isEmpty());
+        assertTrue(convertTime < 450, "Converted in " + convertTime + " ms");
+        assertThrows(TimeoutException.class, () -> Deadline.within(Duration.ofMillis(200)).call(() ->
+                ListConverter.convertAll(products, priceService::retreivePrice)));
+    }
+
+    @Test
+    void nestedScopes() throws Exception {
+        long start = System.currentTimeMillis();
+        Deadline.within(Duration.ofMillis(200)).call(() -> {
+            try (EnhancedTaskScope<Object> outerScope = new EnhancedTaskScope<>()) {
+                outerScope.fork(() -> {
+                    // The inner deadline is not extended by a later deadline
+                    return Deadline.within(Duration.ofSeconds(10)).call(() -> {
+                        try (EnhancedTaskScope<Object> innerScope = new EnhancedTaskScope<>()) {
+                            innerScope.fork(() -> Threads.sleep(5_000));
+                            innerScope.join();
+                            return innerScope.isShutdown();
+                        }
+                    });
+                });
+                outerScope.join();
+            }
+            return null;
+        });
+        long joinTime = System.currentTimeMillis() - start;
+        assertTrue(joinTime < 2_000, "Joined in " + joinTime + " ms");
+    }
+}
@@ -0,0 +1,52 @@
+package com.japplis.virtually.demo;
+
+import java.util.concurrent.StructuredTaskScope.Subtask;
+
+import com.japplis.virtually.scope.EnhancedTaskScope;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnhancedTaskScopeDemos {
+
+    @Test
+    void keepRunningOnFailures() throws Exception {
+        try (EnhancedTaskScope<String> scope = new EnhancedTaskScope<>()) {
+            // default, same as scope.setFailOnException(false)
+            for (int i = 0; i < 3; i++) {
+                scope.fork(EnhancedTaskScopeDemos::failingTask);
+            }
+            scope.join();
+            Subtask<String> lastTask = scope.fork(() -> "done");
+            scope.join();
+            assertFalse(scope.isShutdown());
+            assertEquals("done", lastTask.get());
+            assertNull(scope.getException());
+        }
+    }
+
+    @Test
+    void shutdownOnConsecutiveFailures() throws Exception {
+        try (EnhancedTaskScope<String> scope = new EnhancedTaskScope<>()) {
+            scope.setMaxConsecutiveFails(1);
+            scope.fork(EnhancedTaskScopeDemos::failingTask);
+            scope.join();
+            assertFalse(scope.isShutdown());
+            scope.fork(EnhancedTaskScopeDemos::failingTask);
+            scope.join();
+            assertTrue(scope.isShutdown());
+            assertInstanceOf(IllegalStateException.class, scope.getException());
+        }
+        try (EnhancedTaskScope<String> scope = new EnhancedTaskScope<>()) {
+            scope.setFailOnException(true);
+            scope.fork(EnhancedTaskScopeDemos::failingTask);
+            scope.join();
+            assertTrue(scope.isShutdown());
+        }
+    }
+
+    private static String failingTask() {
+        throw new IllegalStateException("Service unavailable");
+    }
+}
@@ -0,0 +1,106 @@
+package com.japplis.virtually.demo;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Stream;
+
+import com.japplis.virtually.AsyncFileChannel;
+import com.japplis.virtually.Directories;
+import com.japplis.virtually.ListConverter;
+import com.japplis.virtually.MappedFiles;
+import com.japplis.virtually.Threads;
+import com.japplis.virtually.demo.shop.Product;
+import com.japplis.virtually.demo.shop.ShopFactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileDemos {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void convertLineChunks() throws Exception {
+        List<Product> products = ShopFactory.createManyProducts(100_000);
+        Path pricesFile = tempDir.resolve("prices.csv");
+        List<String> lines = products.stream().map(product -> product.id() + ";" + product.id() / 100.0).toList();
+        Files.write(pricesFile, lines);
+        long start = System.currentTimeMillis();
+        List<Integer> lineCounts = MappedFiles.convertLineChunks(pricesFile, 64 * 1024, FileDemos::countLines);
+        int lineCount = lineCounts.stream().mapToInt(Integer::intValue).sum();
+        System.out.println(lineCount + " lines in " + lineCounts.size() + " chunks in " + (System.currentTimeMillis() - start) + " ms.");
+        assertEquals(products.size(), lineCount);
+    }
+
+    @Test
+    void asyncFileChannel() throws Exception {
+        Path indexFile = tempDir.resolve("products.idx");
+        try (AsyncFileChannel channel = AsyncFileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer prices = ByteBuffer.allocate(10_000 * Double.BYTES);
+            for (int productId = 0; productId < 10_000; productId++) {
+                prices.putDouble(productId / 100.0);
+            }
+            channel.write(prices.flip(), 0);
+        }
+        List<Product> products = ShopFactory.createManyProducts(5_000);
+        try (AsyncFileChannel channel = AsyncFileChannel.open(indexFile)) {
+            List<Double> prices = ListConverter.convertAll(products, product -> {
+                ByteBuffer price = ByteBuffer.allocate(Double.BYTES);
+                channel.readFully(price, (long) product.id() * Double.BYTES);
+                return price.flip().getDouble();
+            });
+            assertEquals(products.get(4_999).id() / 100.0, prices.get(4_999));
+        }
+    }
+
+    @Test
+    void walk() throws Exception {
+        createTree(tempDir, 3);
+        try (Stream<Path> textFiles = Directories.walk(tempDir, 8, file -> file.toString().endsWith(".txt"))) {
+            assertEquals(40, textFiles.count()); // 1 + 3 + 9 + 27 directories with 1 text file
+        }
+        try (Stream<Long> fileSizes = Directories.convertFiles(tempDir, 8, file -> true, Files::size)) {
+            assertEquals(80, fileSizes.count());
+        }
+        try (Stream<Path> textFiles = Directories.walk(tempDir, 2, file -> true)) {
+            assertEquals(5, textFiles.limit(5).count());
+        }
+    }
+
+    @Test
+    void walkWithSlowConsumer() throws Exception {
+        for (int i = 0; i < 1_500; i++) { // more files than the results queue can keep
+            Files.writeString(tempDir.resolve("file" + i + ".txt"), "text");
+        }
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            try (Stream<Path> textFiles = Directories.walk(tempDir, 4, file -> true)) {
+                long fileCount = textFiles.peek(file -> Threads.sleep(1)).count(); // slow processing
+                assertEquals(1_500, fileCount);
+            }
+        });
+    }
+
+    private static void createTree(Path directory, int depth) throws Exception {
+        Files.writeString(directory.resolve("file.txt"), "text");
+        Files.writeString(directory.resolve("file.csv"), "1;2");
+        if (depth == 0) return;
+        for (int i = 0; i < 3; i++) {
+            createTree(Files.createDirectory(directory.resolve("dir" + i)), depth - 1);
+        }
+    }
+
+    private static int countLines(ByteBuffer chunk) {
+        int lineCount = 0;
+        while (chunk.hasRemaining()) {
+            if (chunk.get() == '\n') lineCount++;
+        }
+        return lineCount;
+    }
+}
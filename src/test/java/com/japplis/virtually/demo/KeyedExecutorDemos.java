@@ -0,0 +1,101 @@
+package com.japplis.virtually.demo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+import com.japplis.virtually.KeyedExecutor;
+import com.japplis.virtually.Threads;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyedExecutorDemos {
+
+    @Test
+    void orderedUpdatesPerProduct() {
+        KeyedExecutor<Integer> executor = new KeyedExecutor<>("stock-");
+        Map<Integer, List<Integer>> stockUpdates = new HashMap<>();
+        for (int productId = 0; productId < 100; productId++) {
+            stockUpdates.put(productId, new ArrayList<>()); // not thread-safe lists
+        }
+        long start = System.currentTimeMillis();
+        List<CompletableFuture<Void>> updates = new ArrayList<>();
+        for (int update = 0; update < 1_000; update++) {
+            for (int productId = 0; productId < 100; productId++) {
+                List<Integer> productUpdates = stockUpdates.get(productId);
+                int quantity = update;
+                updates.add(executor.execute(productId, () -> productUpdates.add(quantity)));
+            }
+        }
+        CompletableFuture.allOf(updates.toArray(CompletableFuture[]::new)).join();
+        System.out.println(updates.size() + " updates in " + (System.currentTimeMillis() - start) + " ms.");
+        List<Integer> expectedUpdates = IntStream.range(0, 1_000).boxed().toList();
+        stockUpdates.values().forEach(productUpdates -> assertEquals(expectedUpdates, productUpdates));
+        Threads.sleep(100);
+        assertEquals(0, executor.getActiveKeyCount());
+    }
+
+    @Test
+    void concurrentSubmittersOfSameKeys() {
+        KeyedExecutor<Integer> executor = new KeyedExecutor<>("stock-");
+        Map<Integer, List<int[]>> stockUpdates = new HashMap<>();
+        for (int productId = 0; productId < 4; productId++) {
+            stockUpdates.put(productId, new ArrayList<>()); // not thread-safe lists
+        }
+        AtomicIntegerArray runningTasks = new AtomicIntegerArray(4);
+        AtomicInteger concurrentTasks = new AtomicInteger();
+        List<CompletableFuture<Void>> updates = new CopyOnWriteArrayList<>();
+        List<Thread> submitters = new ArrayList<>();
+        for (int submitter = 0; submitter < 8; submitter++) {
+            int submitterId = submitter;
+            submitters.add(Thread.ofPlatform().start(() -> {
+                List<CompletableFuture<Void>> submitterUpdates = new ArrayList<>();
+                for (int update = 0; update < 5_000; update++) {
+                    int productId = update % 4;
+                    int[] stockUpdate = { submitterId, update };
+                    submitterUpdates.add(executor.execute(productId, () -> {
+                        if (runningTasks.incrementAndGet(productId) > 1) concurrentTasks.incrementAndGet();
+                        stockUpdates.get(productId).add(stockUpdate);
+                        runningTasks.decrementAndGet(productId);
+                    }));
+                }
+                updates.addAll(submitterUpdates);
+            }));
+        }
+        Threads.waitForAll(submitters);
+        CompletableFuture.allOf(updates.toArray(CompletableFuture[]::new)).join();
+        assertEquals(40_000, updates.size());
+        assertEquals(0, concurrentTasks.get());
+        for (List<int[]> productUpdates : stockUpdates.values()) {
+            assertEquals(10_000, productUpdates.size()); // no task lost
+            int[] lastUpdates = new int[8];
+            Arrays.fill(lastUpdates, -1);
+            for (int[] stockUpdate : productUpdates) {
+                assertTrue(stockUpdate[1] > lastUpdates[stockUpdate[0]], "Updates of a submitter in submission order");
+                lastUpdates[stockUpdate[0]] = stockUpdate[1];
+            }
+        }
+        Threads.sleep(100);
+        assertEquals(0, executor.getActiveKeyCount());
+    }
+
+    @Test
+    void failedTask() throws Exception {
+        KeyedExecutor<String> executor = new KeyedExecutor<>();
+        CompletableFuture<Integer> failed = executor.submit("product-1", () -> Integer.parseInt("one"));
+        CompletableFuture<Integer> next = executor.submit("product-1", () -> Integer.parseInt("2"));
+        ExecutionException ex = assertThrows(ExecutionException.class, failed::get);
+        assertInstanceOf(NumberFormatException.class, ex.getCause());
+        assertEquals(2, next.get());
+    }
+}
@@ -1,8 +1,10 @@
 package com.japplis.virtually.demo;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import com.japplis.virtually.ConversionMode;
 import com.japplis.virtually.ListConverter;
 import com.japplis.virtually.demo.shop.PriceService;
 import com.japplis.virtually.demo.shop.Product;
@@ -34,6 +36,19 @@ class ListDemos {
         System.out.println("Total price: " + totalPrice + " in " + (System.currentTimeMillis() - start) + " ms.");
     }
 
+    @Test
+    void convertToDoublesDemo() throws Exception {
+        long start = System.currentTimeMillis();
+        List<Product> products = ShopFactory.createManyProducts(5_000);
+        double[] prices = ListConverter.convertToDoubles(products, priceService::retreivePrice);
+        double totalPrice = Arrays.stream(prices).sum();
+        System.out.println("Total price: " + totalPrice + " in " + (System.currentTimeMillis() - start) + " ms.");
+        assertEquals(products.get(4_999).id() / 100.0, prices[4_999]);
+        int[] ids = ListConverter.convertToInts(products, Product::id);
+        assertEquals(products.get(42).id(), ids[42]);
+        assertThrows(IllegalStateException.class, () -> ListConverter.convertToLongs(ShopFactory.createManyProducts(15_000), product -> (long) priceService.retreivePrice(product)));
+    }
+
     @Test
     void convertAllDemoFailed() {
         List<Product> products = ShopFactory.createManyProducts(15_000);
@@ -50,6 +65,39 @@ class ListDemos {
         System.out.println("Price for product 5,000: " + productPrice.get(products.get(4_999)));
     }
 
+    @Test
+    void convertComputeDemo() throws Exception {
+        List<Product> products = ShopFactory.createManyProducts(100_000);
+        long start = System.currentTimeMillis();
+        List<Long> ioHashes = ListConverter.convertAll(products, ListDemos::hashName, ConversionMode.IO);
+        long ioTime = System.currentTimeMillis() - start;
+        start = System.currentTimeMillis();
+        List<Long> cpuHashes = ListConverter.convertAll(products, ListDemos::hashName, ConversionMode.CPU);
+        long cpuTime = System.currentTimeMillis() - start;
+        start = System.currentTimeMillis();
+        List<Long> autoHashes = ListConverter.convertAll(products, ListDemos::hashName, ConversionMode.AUTO);
+        long autoTime = System.currentTimeMillis() - start;
+        assertEquals(ioHashes, cpuHashes);
+        assertEquals(ioHashes, autoHashes);
+        System.out.println("IO: " + ioTime + " ms, CPU: " + cpuTime + " ms, AUTO: " + autoTime + " ms.");
+    }
+
+    @Test
+    void convertBlockingThenComputeDemo() throws Exception {
+        List<Product> products = ShopFactory.createManyProducts(5_000);
+        List<String> priceLabels = ListConverter.convertAll(products, priceService::retreivePrice, price -> String.format("%.2f EUR", price));
+        assertEquals(products.size(), priceLabels.size());
+        assertTrue(ListConverter.convertList(products, priceService::retreivePrice, ConversionMode.AUTO).size() > 0);
+    }
+
+    private static long hashName(Product product) {
+        long hash = product.id();
+        for (int i = 0; i < 1_000; i++) {
+            hash = hash * 31 + product.name().hashCode() + i;
+        }
+        return hash;
+    }
+
     public void main() {
         convertDemo();
     }
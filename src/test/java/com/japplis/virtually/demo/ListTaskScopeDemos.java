@@ -1,17 +1,22 @@
 package com.japplis.virtually.demo;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.StructuredTaskScope;
 
 import com.japplis.virtually.demo.shop.PriceService;
 import com.japplis.virtually.demo.shop.Product;
 import com.japplis.virtually.demo.shop.ShopFactory;
 import com.japplis.virtually.scope.ListTaskScope;
+import com.japplis.virtually.scope.ToDoubleCallable;
 
 import org.junit.jupiter.api.Test;
 
 import com.japplis.virtually.scope.CallableFunction;
 
+import static org.junit.jupiter.api.Assertions.*;
+
 public class ListTaskScopeDemos {
 
     private PriceService priceService = PriceService.getInstance();
@@ -32,4 +37,64 @@ public class ListTaskScopeDemos {
             System.out.println("Size: " + productWithPrices.size() + " & " + prices.size());
         }
     }
+
+    @Test
+    void duplicatesAndDefaultValue() {
+        List<Product> products = ShopFactory.createManyProducts(11_000);
+        List<Product> orderedProducts = new ArrayList<>(products);
+        orderedProducts.addAll(products); // each product ordered twice
+        priceService.resetPriceCallCount();
+        try (ListTaskScope<Product, Double> scope = new ListTaskScope<>(priceService::retreivePrice)) {
+            scope.setDefaultValue(0.0);
+            for (Product product : orderedProducts) {
+                scope.convert(product);
+            }
+            List<Double> prices = scope.getResultsAsList();
+            assertEquals(22_000, prices.size());
+            assertEquals(products.size(), scope.getResultsAsMap().size());
+            assertEquals(products.get(42).id() / 100.0, scope.getResult(11_042));
+            assertEquals(0.0, scope.getResult(10_999)); // too expensive
+            assertEquals(StructuredTaskScope.Subtask.State.FAILED, scope.getState(21_999));
+            double[] priceArray = scope.getResultsAsDoubles(Double.NaN);
+            assertEquals(22_000, priceArray.length);
+            assertEquals(prices.get(20_000), priceArray[20_000]);
+            assertTrue(Double.isNaN(priceArray[21_000])); // too expensive
+        }
+        System.out.println("Price calls for " + orderedProducts.size() + " ordered products: " + priceService.getPriceCallCount());
+        assertTrue(priceService.getPriceCallCount() < orderedProducts.size());
+        assertTrue(priceService.getPriceCallCount() >= products.size());
+    }
+
+    @Test
+    void primitiveConversions() {
+        List<Product> products = ShopFactory.createManyProducts(11_000);
+        ToDoubleCallable<Product> productToPrice = priceService::retreivePrice;
+        try (ListTaskScope<Product, Double> scope = new ListTaskScope<>(priceService::retreivePrice)) {
+            for (Product product : products) {
+                scope.convertToDouble(product, productToPrice); // the price isn't boxed
+            }
+            scope.convertToDouble(products.get(0), productToPrice);
+            scope.convertToInt(products.get(0), Product::id);
+            double[] prices = scope.getResultsAsDoubles(Double.NaN);
+            assertEquals(11_002, prices.length);
+            assertEquals(products.get(42).id() / 100.0, prices[42]);
+            assertTrue(Double.isNaN(prices[10_999])); // too expensive
+            assertEquals(prices[0], prices[11_000]);
+            assertEquals(products.get(0).id(), scope.getResultsAsInts(-1)[11_001]);
+            assertNull(scope.getResult(42)); // only available as primitive
+        }
+    }
+
+    @Test
+    void nullNumericResults() {
+        try (ListTaskScope<String, Integer> scope = new ListTaskScope<>(quantity -> quantity.isEmpty() ? null : Integer.valueOf(quantity))) {
+            scope.convert("12");
+            scope.convert(""); // unknown quantity
+            scope.convert("twelve"); // failed conversion
+            assertArrayEquals(new int[] { 12, -1, -1 }, scope.getResultsAsInts(-1));
+            assertArrayEquals(new long[] { 12, 0, 0 }, scope.getResultsAsLongs(0));
+            assertTrue(Double.isNaN(scope.getResultsAsDoubles(Double.NaN)[1]));
+            assertNull(scope.getResult(1));
+        }
+    }
 }
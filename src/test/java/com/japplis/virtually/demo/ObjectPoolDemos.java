@@ -0,0 +1,50 @@
+package com.japplis.virtually.demo;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+
+import com.japplis.virtually.ListConverter;
+import com.japplis.virtually.ObjectPool;
+import com.japplis.virtually.demo.shop.Product;
+import com.japplis.virtually.demo.shop.ShopFactory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ObjectPoolDemos {
+
+    @Test
+    void hashProducts() throws Exception {
+        ObjectPool<MessageDigest> digests = new ObjectPool<>(ObjectPoolDemos::createDigest, 16, null, MessageDigest::reset);
+        List<Product> products = ShopFactory.createManyProducts(10_000);
+        List<String> hashes = ListConverter.convertAll(products, product ->
+                digests.use(digest -> HexFormat.of().formatHex(digest.digest(product.name().getBytes()))));
+        assertEquals(HexFormat.of().formatHex(createDigest().digest(products.get(42).name().getBytes())), hashes.get(42));
+        System.out.println("Digests created for " + products.size() + " products: " + digests.getCreatedCount());
+        assertTrue(digests.getFreeCount() <= 16);
+    }
+
+    @Test
+    void validateObjects() {
+        ObjectPool<StringBuilder> builders = new ObjectPool<>(StringBuilder::new, 4, builder -> builder.capacity() < 1024, builder -> builder.setLength(0));
+        StringBuilder builder = builders.acquire();
+        builders.release(builder);
+        assertSame(builder, builders.acquire());
+        builder.append("x".repeat(2048));
+        builders.release(builder); // too big to be kept
+        assertEquals(0, builders.getFreeCount());
+        assertNotSame(builder, builders.acquire());
+        assertEquals(2, builders.getCreatedCount());
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
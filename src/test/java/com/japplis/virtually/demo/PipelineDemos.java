@@ -0,0 +1,56 @@
+package com.japplis.virtually.demo;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.japplis.virtually.Threads;
+import com.japplis.virtually.demo.shop.PriceService;
+import com.japplis.virtually.demo.shop.Product;
+import com.japplis.virtually.demo.shop.ShopFactory;
+import com.japplis.virtually.scope.Deadline;
+import com.japplis.virtually.scope.Pipeline;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PipelineDemos {
+
+    private PriceService priceService = PriceService.getInstance();
+
+    @Test
+    void fetchEnrichPersist() throws Exception {
+        List<Product> products = ShopFactory.createManyProducts(1_000);
+        Set<String> database = ConcurrentHashMap.newKeySet();
+        AtomicInteger maxEnriching = new AtomicInteger();
+        AtomicInteger enriching = new AtomicInteger();
+        Pipeline<Product, String> pipeline = Pipeline.<Product, Double>of(priceService::retreivePrice, 500)
+                .then(price -> {
+                    maxEnriching.accumulateAndGet(enriching.incrementAndGet(), Math::max);
+                    Threads.sleep(10);
+                    enriching.decrementAndGet();
+                    return String.format("%.2f EUR", price);
+                }, 50)
+                .then(priceLabel -> database.add(priceLabel) ? priceLabel : null, 5);
+        long start = System.currentTimeMillis();
+        List<String> persisted = pipeline.convert(products);
+        System.out.println(persisted.size() + " products in " + (System.currentTimeMillis() - start) + " ms.");
+        assertEquals(1_000, persisted.size());
+        assertEquals(1_000, database.size());
+        assertTrue(maxEnriching.get() <= 50);
+    }
+
+    @Test
+    void failOnException() {
+        List<Product> products = ShopFactory.createManyProducts(15_000);
+        Pipeline<Product, Double> pipeline = Pipeline.of(priceService::retreivePrice, 1_000);
+        pipeline.setFailOnException(true);
+        assertThrows(IllegalStateException.class, () -> pipeline.convert(products));
+        pipeline.setFailOnException(false);
+        assertThrows(TimeoutException.class, () -> Deadline.within(Duration.ofMillis(700)).call(() -> pipeline.convert(products)));
+    }
+}
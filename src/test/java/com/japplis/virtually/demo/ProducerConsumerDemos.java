@@ -0,0 +1,165 @@
+package com.japplis.virtually.demo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.japplis.virtually.Channel;
+import com.japplis.virtually.Threads;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProducerConsumerDemos {
+
+    private static final int PRODUCERS = 100;
+    private static final int CONSUMERS = 100;
+    private static final int MESSAGES_PER_PRODUCER = 2_000;
+
+    @Test
+    void sendAndClose() throws Exception {
+        Channel<Integer> channel = new Channel<>(10);
+        Thread producer = Thread.startVirtualThread(() -> {
+            try (channel) {
+                for (int i = 1; i <= 100; i++) {
+                    channel.send(i);
+                }
+            } catch (InterruptedException ex) {
+            }
+        });
+        int total = 0;
+        for (Integer value = channel.receive(); value != null; value = channel.receive()) {
+            total += value;
+        }
+        producer.join();
+        assertEquals(5_050, total);
+        assertThrows(IllegalStateException.class, () -> channel.send(1));
+    }
+
+    @Test
+    void interruptRendezvousSend() throws Exception {
+        Channel<String> orders = new Channel<>();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread sender = Thread.startVirtualThread(() -> {
+            try {
+                orders.send("order-1"); // no receiver
+            } catch (InterruptedException ex) {
+                interrupted.set(true);
+            }
+        });
+        Threads.sleep(50);
+        sender.interrupt();
+        sender.join();
+        assertTrue(interrupted.get());
+        assertNull(orders.poll()); // the send was cancelled
+        Thread.startVirtualThread(() -> {
+            try {
+                orders.send("order-2");
+            } catch (InterruptedException ex) {
+            }
+        });
+        assertEquals("order-2", orders.receive());
+    }
+
+    @Test
+    void select() throws Exception {
+        Channel<String> orders = new Channel<>();
+        Channel<String> cancellations = new Channel<>(5);
+        assertNull(Channel.select(Duration.ofMillis(50), orders, cancellations));
+        Thread.startVirtualThread(() -> {
+            Threads.sleep(50);
+            try {
+                orders.send("order-1");
+            } catch (InterruptedException ex) {
+            }
+        });
+        Channel.Selection<String> selection = Channel.select(Duration.ofSeconds(5), orders, cancellations);
+        assertEquals(0, selection.index());
+        assertEquals("order-1", selection.element());
+        cancellations.send("order-2");
+        cancellations.close();
+        assertEquals(new Channel.Selection<>(1, "order-2"), Channel.select(Duration.ofSeconds(5), orders, cancellations));
+        assertEquals(new Channel.Selection<>(1, null), Channel.select(Duration.ofSeconds(5), orders, cancellations));
+    }
+
+    @Test
+    void compareThroughput() throws Exception {
+        long boundedChannelTime = timeChannel(new Channel<>(100));
+        long arrayQueueTime = timeQueue(new ArrayBlockingQueue<>(100));
+        long rendezvousChannelTime = timeChannel(new Channel<>());
+        long synchronousQueueTime = timeQueue(new SynchronousQueue<>());
+        System.out.println("Channel(100): " + boundedChannelTime + " ms, ArrayBlockingQueue(100): " + arrayQueueTime +
+                " ms, Channel(): " + rendezvousChannelTime + " ms, SynchronousQueue: " + synchronousQueueTime + " ms.");
+    }
+
+    private static long timeChannel(Channel<Long> channel) throws Exception {
+        long start = System.currentTimeMillis();
+        AtomicLong total = new AtomicLong();
+        List<Thread> producers = startProducers(channel::send);
+        List<Thread> consumers = new ArrayList<>();
+        for (int i = 0; i < CONSUMERS; i++) {
+            consumers.add(Thread.startVirtualThread(() -> {
+                try {
+                    for (Long value = channel.receive(); value != null; value = channel.receive()) {
+                        total.addAndGet(value);
+                    }
+                } catch (InterruptedException ex) {
+                }
+            }));
+        }
+        Threads.waitForAll(producers);
+        channel.close();
+        Threads.waitForAll(consumers);
+        assertEquals(PRODUCERS * (long) MESSAGES_PER_PRODUCER, total.get());
+        return System.currentTimeMillis() - start;
+    }
+
+    private static long timeQueue(BlockingQueue<Long> queue) throws Exception {
+        long start = System.currentTimeMillis();
+        AtomicLong total = new AtomicLong();
+        List<Thread> producers = startProducers(queue::put);
+        List<Thread> consumers = new ArrayList<>();
+        for (int i = 0; i < CONSUMERS; i++) {
+            consumers.add(Thread.startVirtualThread(() -> {
+                try {
+                    for (long value = queue.take(); value != 0; value = queue.take()) {
+                        total.addAndGet(value);
+                    }
+                } catch (InterruptedException ex) {
+                }
+            }));
+        }
+        Threads.waitForAll(producers);
+        for (int i = 0; i < CONSUMERS; i++) {
+            queue.put(0L); // end of messages
+        }
+        Threads.waitForAll(consumers);
+        assertEquals(PRODUCERS * (long) MESSAGES_PER_PRODUCER, total.get());
+        return System.currentTimeMillis() - start;
+    }
+
+    private static List<Thread> startProducers(Sender sender) {
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < PRODUCERS; i++) {
+            producers.add(Thread.startVirtualThread(() -> {
+                try {
+                    for (int j = 0; j < MESSAGES_PER_PRODUCER; j++) {
+                        sender.send(1L);
+                    }
+                } catch (InterruptedException ex) {
+                }
+            }));
+        }
+        return producers;
+    }
+
+    private interface Sender {
+        void send(Long value) throws InterruptedException;
+    }
+}
@@ -0,0 +1,45 @@
+package com.japplis.virtually.demo;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.japplis.virtually.ListConverter;
+import com.japplis.virtually.ThreadBucket;
+import com.japplis.virtually.demo.shop.Product;
+import com.japplis.virtually.demo.shop.ShopFactory;
+import com.japplis.virtually.scope.ScopedContext;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScopedContextDemos {
+
+    private final static ScopedValue<String> TENANT = ScopedContext.newCarriedValue();
+    private final static ThreadLocal<String> TENANT_THREAD_LOCAL = new ThreadLocal<>();
+
+    @Test
+    void convertWithTenant() throws Exception {
+        List<Product> products = ShopFactory.createManyProducts(1_000);
+        List<String> tenants = ScopedValue.where(TENANT, "shop-1").call(() ->
+                ListConverter.convertAll(products, product -> TENANT.get()));
+        assertEquals(1_000, tenants.size());
+        assertTrue(tenants.stream().allMatch("shop-1"::equals));
+    }
+
+    @Test
+    void threadBucketWithThreadLocalTenant() {
+        TENANT_THREAD_LOCAL.set("shop-2");
+        Set<String> tenants = ConcurrentHashMap.newKeySet();
+        ThreadBucket bucket = new ThreadBucket("tenant-");
+        ScopedContext.whereThreadLocal(TENANT, TENANT_THREAD_LOCAL).run(() -> {
+            for (int i = 0; i < 100; i++) {
+                bucket.startVitualThread(() -> tenants.add(TENANT.get()));
+            }
+        });
+        bucket.waitForAll();
+        TENANT_THREAD_LOCAL.remove();
+        assertEquals(Set.of("shop-2"), tenants);
+    }
+}
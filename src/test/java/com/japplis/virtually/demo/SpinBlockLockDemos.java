@@ -0,0 +1,91 @@
+package com.japplis.virtually.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+
+import com.japplis.virtually.Threads;
+import com.japplis.virtually.sync.BlockLock;
+import com.japplis.virtually.sync.SpinBlockLock;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpinBlockLockDemos {
+
+    private static final int THREAD_COUNT = 8;
+
+    private long counter;
+
+    @Test
+    void compareShortSections() {
+        BlockLock blockLock = new BlockLock();
+        SpinBlockLock spinLock = new SpinBlockLock();
+        long blockLockTime = timeOperations(500_000, i -> {
+            try (var lock = blockLock.lockBlock()) {
+                counter++;
+            }
+        });
+        counter = 0;
+        long spinLockTime = timeOperations(500_000, i -> {
+            try (var lock = spinLock.lockBlock()) {
+                counter++;
+            }
+        });
+        assertEquals(THREAD_COUNT * 500_000L, counter);
+        System.out.println("Short sections - BlockLock: " + blockLockTime + " ms, SpinBlockLock: " + spinLockTime +
+                " ms, spin budget: " + spinLock.getSpinBudget());
+    }
+
+    @Test
+    void compareLongSections() {
+        BlockLock blockLock = new BlockLock();
+        SpinBlockLock spinLock = new SpinBlockLock();
+        long blockLockTime = timeOperations(200, i -> {
+            try (var lock = blockLock.lockBlock()) {
+                busyWork(100_000);
+            }
+        });
+        long spinLockTime = timeOperations(200, i -> {
+            try (var lock = spinLock.lockBlock()) {
+                busyWork(100_000);
+            }
+        });
+        assertTrue(spinLock.getAverageHoldNanos() > 0);
+        System.out.println("Long sections - BlockLock: " + blockLockTime + " ms, SpinBlockLock: " + spinLockTime +
+                " ms, average hold: " + spinLock.getAverageHoldNanos() + " ns");
+    }
+
+    @Test
+    void reentrant() {
+        SpinBlockLock spinLock = new SpinBlockLock();
+        try (var lock = spinLock.lockBlock()) {
+            try (var innerLock = spinLock.lockBlock()) {
+                assertEquals(2, spinLock.getHoldCount());
+            }
+        }
+        assertFalse(spinLock.isLocked());
+    }
+
+    private void busyWork(int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            counter = counter * 31 + i;
+        }
+    }
+
+    private long timeOperations(int operationsPerThread, IntConsumer operation) {
+        long start = System.currentTimeMillis();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            Thread thread = Thread.startVirtualThread(() -> {
+                for (int i = 0; i < operationsPerThread; i++) {
+                    operation.accept(i);
+                }
+            });
+            threads.add(thread);
+        }
+        Threads.waitForAll(threads);
+        return System.currentTimeMillis() - start;
+    }
+}
@@ -0,0 +1,123 @@
+package com.japplis.virtually.demo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+import com.japplis.virtually.Threads;
+import com.japplis.virtually.sync.BlockLock;
+import com.japplis.virtually.sync.StampBlockLock;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StampBlockLockDemos {
+
+    private static final int THREAD_COUNT = 8;
+    private static final int OPERATIONS_PER_THREAD = 500_000;
+
+    private double price;
+    private double discount;
+    private List<String> products;
+    private int selectedIndex;
+    private StampBlockLock stampLock = new StampBlockLock();
+    private BlockLock blockLock = new BlockLock();
+    private ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+
+    @Test
+    void tryOptimisticRead() {
+        stampLock.runWrite(() -> {
+            price = 10;
+            discount = 1;
+            return null;
+        });
+        double discountedPrice = stampLock.tryOptimisticRead(() -> price - discount);
+        assertEquals(9, discountedPrice);
+        try (var block = stampLock.lockWriteBlock()) {
+            price = 20;
+        }
+        try (var block = stampLock.lockReadBlock()) {
+            assertEquals(19, price - discount);
+        }
+    }
+
+    @Test
+    void optimisticReadDuringWrite() {
+        List<String> initialProducts = List.of("laptop");
+        products = initialProducts;
+        selectedIndex = 0;
+        String selectedProduct = stampLock.tryOptimisticRead(() -> {
+            List<String> readProducts = products;
+            if (readProducts == initialProducts) { // only during the optimistic read
+                Thread writer = Thread.ofPlatform().start(() -> stampLock.runWrite(() -> {
+                    products = List.of("laptop", "phone");
+                    selectedIndex = 1;
+                    return null;
+                }));
+                Threads.waitForAll(List.of(writer));
+            }
+            return readProducts.get(selectedIndex); // IndexOutOfBoundsException with the torn state
+        });
+        assertEquals("phone", selectedProduct);
+        assertThrows(IndexOutOfBoundsException.class, () -> stampLock.tryOptimisticRead(() -> products.get(2)));
+    }
+
+    @Test
+    void compareLocks() {
+        // Mostly reads with a write every 100 operations
+        long blockLockTime = timeOperations(i -> {
+            try (var lock = blockLock.lockBlock()) {
+                if (i % 100 == 0) price = i; else readPrice();
+            }
+        });
+        long readWriteLockTime = timeOperations(i -> {
+            if (i % 100 == 0) {
+                readWriteLock.writeLock().lock();
+                try {
+                    price = i;
+                } finally {
+                    readWriteLock.writeLock().unlock();
+                }
+            } else {
+                readWriteLock.readLock().lock();
+                try {
+                    readPrice();
+                } finally {
+                    readWriteLock.readLock().unlock();
+                }
+            }
+        });
+        long stampLockTime = timeOperations(i -> {
+            if (i % 100 == 0) {
+                try (var lock = stampLock.lockWriteBlock()) {
+                    price = i;
+                }
+            } else {
+                stampLock.tryOptimisticRead(this::readPrice);
+            }
+        });
+        System.out.println("BlockLock: " + blockLockTime + " ms, ReentrantReadWriteLock: " + readWriteLockTime +
+                " ms, StampBlockLock: " + stampLockTime + " ms.");
+    }
+
+    private double readPrice() {
+        return price - discount;
+    }
+
+    private long timeOperations(IntConsumer operation) {
+        long start = System.currentTimeMillis();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            Thread thread = Thread.startVirtualThread(() -> {
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    operation.accept(i);
+                }
+            });
+            threads.add(thread);
+        }
+        Threads.waitForAll(threads);
+        return System.currentTimeMillis() - start;
+    }
+}
@@ -1,5 +1,10 @@
 package com.japplis.virtually.demo;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.japplis.virtually.ThreadBucket;
 import com.japplis.virtually.Threads;
@@ -7,6 +12,7 @@ import com.japplis.virtually.Threads;
 import org.junit.jupiter.api.Test;
 
 import static com.japplis.virtually.sync.SyncUtils.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 class SyncUtilsDemos {
     private int index;
@@ -22,6 +28,122 @@ class SyncUtilsDemos {
         threads.waitForAll();
     }
 
+    @Test
+    void forClassDemo() {
+        ThreadBucket threads = new ThreadBucket("forClass");
+        for (int i = 1; i <= 10; i++) {
+            int loopIndex = i;
+            threads.startVitualThread(() -> runSynchronized(forClass(SyncUtilsDemos.class), () -> {
+                index = loopIndex;
+                Threads.sleep(10);
+                assertEquals(loopIndex, index);
+                return null;
+            }));
+        }
+        threads.waitForAll();
+        assertSame(forClass(SyncUtilsDemos.class), forClass(SyncUtilsDemos.class));
+        Runnable anonymous = new Runnable() {
+            public void run() {
+            }
+        };
+        assertNotSame(forClass(anonymous.getClass()), forClass(SyncUtilsDemos.class));
+    }
+
+    @Test
+    void runReadWriteDemo() {
+        ThreadBucket threads = new ThreadBucket("runReadWrite");
+        long start = System.currentTimeMillis();
+        for (int i = 1; i <= 10; i++) {
+            int loopIndex = i;
+            if (loopIndex % 5 == 0) {
+                threads.startVitualThread(() -> writeIndex(loopIndex));
+            } else {
+                threads.startVitualThread(() -> readIndex(loopIndex));
+            }
+        }
+        threads.waitForAll();
+        System.out.println("Read & write in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    @Test
+    void classLockKey() {
+        runSynchronized(SyncUtilsDemos.class, () -> {
+            assertTrue(forClass(SyncUtilsDemos.class).isHeldByCurrentThread());
+            return null;
+        });
+        Thread callerClassThread = Thread.startVirtualThread(() -> runSynchronized(() -> { // locks SyncUtilsDemos.class
+            Threads.sleep(300);
+            return null;
+        }));
+        Threads.sleep(50);
+        assertThrows(TimeoutException.class, () -> callSynchronizedAll(List.of(SyncUtilsDemos.class), Duration.ofMillis(50), () -> null));
+        Threads.waitFor(callerClassThread);
+    }
+
+    @Test
+    void runSynchronizedAllDemo() {
+        int[] stock = new int[3];
+        ThreadBucket threads = new ThreadBucket("runSynchronizedAll");
+        for (int i = 1; i <= 1_000; i++) {
+            // Same products in different orders, the locks are acquired in the same order to avoid deadlocks
+            List<Integer> productIds = i % 2 == 0 ? List.of(0, 1, 2) : List.of(2, 1, 0);
+            threads.startVitualThread(() -> runSynchronizedAll(productIds, () -> {
+                for (int productId : productIds) {
+                    stock[productId]++;
+                }
+                return null;
+            }));
+        }
+        threads.waitForAll();
+        assertArrayEquals(new int[] {1_000, 1_000, 1_000}, stock);
+    }
+
+    @Test
+    void runSynchronizedAllCollidingKeys() throws InterruptedException {
+        // Different keys with the same hash code and no natural order, locked in opposite orders
+        List<Warehouse> warehouses = List.of(new Warehouse("north"), new Warehouse("south"));
+        int[] transfers = new int[1];
+        List<Thread> threads = new ArrayList<>();
+        for (List<Warehouse> keys : List.of(warehouses, warehouses.reversed())) {
+            threads.add(Thread.ofPlatform().daemon().start(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    runSynchronizedAll(keys, () -> transfers[0]++);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join(Duration.ofSeconds(20));
+            assertFalse(thread.isAlive(), "Deadlock");
+        }
+        assertEquals(200_000, transfers[0]);
+    }
+
+    @Test
+    void callSynchronizedAllTimeout() {
+        Thread lockingThread = Thread.startVirtualThread(() -> runSynchronized(2, () -> Threads.sleep(500)));
+        Threads.sleep(50);
+        assertThrows(TimeoutException.class, () -> callSynchronizedAll(List.of(1, 2), Duration.ofMillis(100), () -> null));
+        Threads.waitFor(lockingThread);
+    }
+
+    @Test
+    void runWithPermitsDemo() {
+        AtomicInteger connections = new AtomicInteger();
+        AtomicInteger maxConnections = new AtomicInteger();
+        ThreadBucket threads = new ThreadBucket("runWithPermits");
+        long start = System.currentTimeMillis();
+        for (int i = 1; i <= 20; i++) {
+            threads.startVitualThread(() -> runWithPermits("host", 5, () -> {
+                maxConnections.accumulateAndGet(connections.incrementAndGet(), Math::max);
+                Threads.sleep(100);
+                return connections.decrementAndGet();
+            }));
+        }
+        threads.waitForAll();
+        System.out.println("20 calls with 5 permits in " + (System.currentTimeMillis() - start) + " ms.");
+        assertEquals(5, maxConnections.get());
+    }
+
     private void printIndex(int loopIndex) {
         runSynchronized(() -> {
             index = loopIndex;
@@ -40,9 +162,33 @@ class SyncUtilsDemos {
         });
     }
 
+    private void readIndex(int loopIndex) {
+        runRead(lock, () -> {
+            Threads.sleep(100);
+            System.out.println("read " + index + " -> " + loopIndex);
+            return null;
+        });
+    }
+
+    private void writeIndex(int loopIndex) {
+        runWrite(lock, () -> {
+            index = loopIndex;
+            Threads.sleep(100);
+            System.out.println("write " + index + " -> " + loopIndex);
+            return null;
+        });
+    }
+
     private void printIndexUnlocked(int loopIndex) {
         index = loopIndex;
         Threads.sleep(100);
         System.out.println(index + " -> " + loopIndex);
     }
+
+    private record Warehouse(String name) {
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package com.japplis.virtually.demo;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.japplis.virtually.ThreadBucket;
+import com.japplis.virtually.Threads;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThreadBucketDemos {
+
+    @Test
+    void startFromManyThreads() {
+        ThreadBucket bucket = new ThreadBucket("worker-");
+        List<Thread> starters = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Thread starter = Thread.startVirtualThread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    bucket.startVitualThread(() -> Threads.sleep(10));
+                }
+            });
+            starters.add(starter);
+        }
+        Threads.waitForAll(starters);
+        bucket.waitForAll();
+        assertEquals(10_000, bucket.getStartedCount());
+        assertEquals(10_000, bucket.getFinishedCount());
+        assertEquals(0, bucket.getLiveCount());
+        assertTrue(bucket.getThreads().isEmpty());
+    }
+
+    @Test
+    void waitForWithDeadline() {
+        ThreadBucket bucket = new ThreadBucket("sleeper-");
+        bucket.startVitualThread(() -> Threads.sleep(50));
+        bucket.startVitualThread(() -> Threads.sleep(10_000));
+        long start = System.currentTimeMillis();
+        List<Thread> finishedThreads = bucket.waitFor(Duration.ofMillis(300));
+        long waitTime = System.currentTimeMillis() - start;
+        assertEquals(1, finishedThreads.size());
+        assertTrue(waitTime >= 300 && waitTime < 2_000, "Waited " + waitTime + " ms");
+    }
+
+    @Test
+    void executorService() throws Exception {
+        ThreadBucket bucket = new ThreadBucket("task-");
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 1; i <= 100; i++) {
+            int taskIndex = i;
+            tasks.add(() -> {
+                Threads.sleep(10);
+                return taskIndex;
+            });
+        }
+        int total = 0;
+        for (Future<Integer> result : bucket.invokeAll(tasks)) {
+            total += result.get();
+        }
+        assertEquals(5_050, total);
+        assertTrue(bucket.invokeAny(tasks) > 0);
+        bucket.shutdownNow();
+    }
+
+    @Test
+    void waitForAnyAndShutdown() throws Exception {
+        ThreadBucket bucket = new ThreadBucket("sleeper-");
+        Thread quickThread = bucket.startVitualThread(() -> Threads.sleep(20));
+        bucket.startVitualThread(() -> Threads.sleep(10_000));
+        assertEquals(quickThread, bucket.waitForAny(Duration.ofSeconds(5)));
+        bucket.shutdown();
+        assertFalse(bucket.awaitTermination(100, TimeUnit.MILLISECONDS));
+        bucket.shutdownNow();
+        assertTrue(bucket.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void noTaskAfterTermination() throws Exception {
+        AtomicInteger lateTasks = new AtomicInteger();
+        for (int round = 0; round < 50; round++) {
+            ThreadBucket bucket = new ThreadBucket("late-");
+            AtomicBoolean terminated = new AtomicBoolean();
+            List<Thread> submitters = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                submitters.add(Thread.ofPlatform().start(() -> {
+                    try {
+                        while (true) {
+                            bucket.execute(() -> {
+                                if (terminated.get()) lateTasks.incrementAndGet();
+                            });
+                        }
+                    } catch (RejectedExecutionException ex) {
+                        // shut down
+                    }
+                }));
+            }
+            Threads.sleep(2);
+            bucket.shutdown();
+            assertTrue(bucket.awaitTermination(5, TimeUnit.SECONDS));
+            terminated.set(true);
+            Threads.waitForAll(submitters);
+            assertTrue(bucket.isTerminated());
+        }
+        assertEquals(0, lateTasks.get());
+    }
+}
@@ -0,0 +1,114 @@
+package com.japplis.virtually.sync;
+
+import java.lang.reflect.Method;
+
+import com.japplis.virtually.demo.shop.Product;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// In the sync package to compute the lock keys without the aspect weaving
+class SynchronizedOnDemos {
+
+    private final static String[] NAMES = { "product", "quantity" };
+
+    @Test
+    void parameterNamesAndIndexes() throws Exception {
+        Method byName = method("updateStock");
+        Method byIndex = method("updateStockByIndex");
+        Product product = new Product(42, "Book");
+        assertEquals(MethodLockKeys.lockKey(byName, NAMES, new Object[] { product, 1 }),
+                MethodLockKeys.lockKey(byName, NAMES, new Object[] { product, 5 }));
+        assertNotEquals(MethodLockKeys.lockKey(byName, NAMES, new Object[] { product, 1 }),
+                MethodLockKeys.lockKey(byName, NAMES, new Object[] { new Product(43, "Pen"), 1 }));
+        // Without lock name, the lock is per method
+        assertNotEquals(MethodLockKeys.lockKey(byName, NAMES, new Object[] { product, 1 }),
+                MethodLockKeys.lockKey(byIndex, NAMES, new Object[] { product, 1 }));
+    }
+
+    @Test
+    void propertyPaths() throws Exception {
+        Method recordAccessor = method("reserve");
+        Method getter = method("ship");
+        Method field = method("pack");
+        Product product = new Product(42, "Book");
+        // record accessor product.id() and getter order.getProduct() followed by id()
+        assertEquals(MethodLockKeys.lockKey(recordAccessor, NAMES, new Object[] { product, 1 }),
+                MethodLockKeys.lockKey(getter, new String[] { "order" }, new Object[] { new Order(product, "ABC") }));
+        // private field order.reference
+        assertEquals(MethodLockKeys.lockKey(field, new String[] { "order" }, new Object[] { new Order(product, "ABC") }),
+                MethodLockKeys.lockKey(field, new String[] { "order" }, new Object[] { new Order(new Product(1, "Pen"), "ABC") }));
+        assertNotEquals(MethodLockKeys.lockKey(field, new String[] { "order" }, new Object[] { new Order(product, "ABC") }),
+                MethodLockKeys.lockKey(field, new String[] { "order" }, new Object[] { new Order(product, "DEF") }));
+    }
+
+    @Test
+    void multipleParameters() throws Exception {
+        Method transfer = method("transfer");
+        String[] names = { "from", "to", "amount" };
+        assertEquals(MethodLockKeys.lockKey(transfer, names, new Object[] { "A", "B", 10 }),
+                MethodLockKeys.lockKey(transfer, names, new Object[] { "A", "B", 20 }));
+        assertNotEquals(MethodLockKeys.lockKey(transfer, names, new Object[] { "A", "B", 10 }),
+                MethodLockKeys.lockKey(transfer, names, new Object[] { "B", "A", 10 }));
+    }
+
+    @Test
+    void unknownParameter() throws Exception {
+        Method unknown = method("unknownParameter");
+        assertThrows(IllegalArgumentException.class, () -> MethodLockKeys.lockKey(unknown, NAMES, new Object[] { new Product(1, "Pen"), 1 }));
+    }
+
+    private static Method method(String name) {
+        for (Method method : Stock.class.getDeclaredMethods()) {
+            if (method.getName().equals(name)) return method;
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    static class Stock {
+
+        @SynchronizedOn("product")
+        void updateStock(Product product, int quantity) {
+        }
+
+        @SynchronizedOn("0")
+        void updateStockByIndex(Product product, int quantity) {
+        }
+
+        @SynchronizedOn(value = "product.id", lockName = "stock")
+        void reserve(Product product, int quantity) {
+        }
+
+        @SynchronizedOn(value = "order.product.id", lockName = "stock")
+        void ship(Order order) {
+        }
+
+        @SynchronizedOn("0.reference")
+        void pack(Order order) {
+        }
+
+        @SynchronizedOn({ "from", "to" })
+        void transfer(String from, String to, int amount) {
+        }
+
+        @SynchronizedOn("customer")
+        void unknownParameter(Product product, int quantity) {
+        }
+    }
+
+    static class Order {
+
+        private final Product product;
+        private final String reference;
+
+        Order(Product product, String reference) {
+            this.product = product;
+            this.reference = reference;
+        }
+
+        public Product getProduct() {
+            return product;
+        }
+    }
+}